@@ -0,0 +1,62 @@
+package org.example.graphqlcrudapi.config;
+
+import org.example.graphqlcrudapi.service.InstanceLease;
+import org.example.graphqlcrudapi.service.UserChangeLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.UUID;
+
+@Configuration
+@EnableConfigurationProperties(ChangeLogProperties.class)
+public class ChangeLogConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeLogConfig.class);
+
+    /**
+     * The log lives on one instance's disk and its sequence numbers are that
+     * instance's own, so only one instance may relay the shared outbox into it
+     * and serve the feed. Another instance started against the same database
+     * fails here.
+     */
+    @Bean(destroyMethod = "close")
+    public InstanceLease userChangeLogLease(ChangeLogProperties properties, JdbcTemplate jdbcTemplate) {
+        return InstanceLease.acquire("user-change-log", jdbcTemplate, properties.getLeaseTtl(), () -> {
+        });
+    }
+
+    /**
+     * The log lives on local disk and can outlive the database, for example the
+     * default in-memory H2 one. It is bound to the id kept in the database's
+     * {@code change_log_identity} table, which a fresh database doesn't have yet,
+     * so a log from an earlier database is emptied instead of replayed. With
+     * sharding the id is kept on shard 0, where the JdbcTemplate routes.
+     */
+    @Bean(destroyMethod = "close")
+    @DependsOn("userChangeLogLease")
+    public UserChangeLog userChangeLog(ChangeLogProperties properties, JdbcTemplate jdbcTemplate) {
+        UserChangeLog changeLog = new UserChangeLog(
+                properties.getDirectory(),
+                properties.getSegmentSize().toBytes(),
+                properties.getRetainedSegments(),
+                properties.getFsync() == ChangeLogProperties.FsyncPolicy.ALWAYS);
+        if (changeLog.bindTo(databaseId(jdbcTemplate))) {
+            log.info("Emptied user change log in {}: it was written for another database", properties.getDirectory());
+        }
+        return changeLog;
+    }
+
+    private static String databaseId(JdbcTemplate jdbcTemplate) {
+        String id = jdbcTemplate.queryForObject("SELECT MIN(id) FROM change_log_identity", String.class);
+        if (id == null) {
+            jdbcTemplate.update("INSERT INTO change_log_identity (id) VALUES (?)", UUID.randomUUID().toString());
+            id = jdbcTemplate.queryForObject("SELECT MIN(id) FROM change_log_identity", String.class);
+        }
+        return id;
+    }
+}
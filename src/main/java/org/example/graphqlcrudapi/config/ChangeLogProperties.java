@@ -0,0 +1,108 @@
+package org.example.graphqlcrudapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Settings for the append-only user change log
+ */
+@ConfigurationProperties(prefix = "app.changelog")
+public class ChangeLogProperties {
+
+    /**
+     * When changes written to the log are forced to disk
+     */
+    public enum FsyncPolicy {
+        /** After every appended batch */
+        ALWAYS,
+        /** Periodically, every {@code fsyncInterval} */
+        INTERVAL,
+        /** Left to the operating system */
+        NEVER
+    }
+
+    private Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "graphql-crud-api", "changelog");
+
+    private DataSize segmentSize = DataSize.ofMegabytes(4);
+
+    private int retainedSegments = 16;
+
+    private FsyncPolicy fsync = FsyncPolicy.INTERVAL;
+
+    private Duration fsyncInterval = Duration.ofSeconds(1);
+
+    private Duration relayInterval = Duration.ofSeconds(1);
+
+    private int relayBatchSize = 500;
+
+    private Duration leaseTtl = Duration.ofSeconds(30);
+
+    // Getters and Setters
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    public DataSize getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(DataSize segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public int getRetainedSegments() {
+        return retainedSegments;
+    }
+
+    public void setRetainedSegments(int retainedSegments) {
+        this.retainedSegments = retainedSegments;
+    }
+
+    public FsyncPolicy getFsync() {
+        return fsync;
+    }
+
+    public void setFsync(FsyncPolicy fsync) {
+        this.fsync = fsync;
+    }
+
+    public Duration getFsyncInterval() {
+        return fsyncInterval;
+    }
+
+    public void setFsyncInterval(Duration fsyncInterval) {
+        this.fsyncInterval = fsyncInterval;
+    }
+
+    public Duration getRelayInterval() {
+        return relayInterval;
+    }
+
+    public void setRelayInterval(Duration relayInterval) {
+        this.relayInterval = relayInterval;
+    }
+
+    public int getRelayBatchSize() {
+        return relayBatchSize;
+    }
+
+    public void setRelayBatchSize(int relayBatchSize) {
+        this.relayBatchSize = relayBatchSize;
+    }
+
+    public Duration getLeaseTtl() {
+        return leaseTtl;
+    }
+
+    public void setLeaseTtl(Duration leaseTtl) {
+        this.leaseTtl = leaseTtl;
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.graphqlcrudapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.graphqlcrudapi.execution.CancellableStatementDataSource;
+import org.example.graphqlcrudapi.execution.ExecutionBudgetInstrumentation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.sql.DataSource;
+
+/**
+ * Time budgets for GraphQL execution, enforced down to the JDBC statements it runs
+ */
+@Configuration
+@EnableConfigurationProperties(ExecutionTimeoutProperties.class)
+@ConditionalOnProperty(prefix = "app.graphql.timeout", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ExecutionTimeoutConfig {
+
+    @Bean
+    public ExecutionBudgetInstrumentation executionBudgetInstrumentation(ExecutionTimeoutProperties properties,
+                                                                         ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ExecutionBudgetInstrumentation(properties.getOperation(), properties.getFields(),
+                meterRegistry.getIfAvailable());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler graphQlExecutionScheduler(ExecutionTimeoutProperties properties) {
+        return Schedulers.newBoundedElastic(properties.getExecutionThreads(),
+                Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "graphql-exec");
+    }
+
+    /**
+     * Wraps the JPA data source so statements can be cancelled; the shard data
+     * sources behind it are left alone
+     */
+    @Bean
+    public static BeanPostProcessor cancellableStatementDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("dataSource".equals(beanName) && bean instanceof DataSource dataSource) {
+                    return new CancellableStatementDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.graphqlcrudapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Time budgets for GraphQL queries and mutations
+ */
+@ConfigurationProperties(prefix = "app.graphql.timeout")
+public class ExecutionTimeoutProperties {
+
+    private boolean enabled = true;
+
+    private Duration operation = Duration.ofSeconds(30);
+
+    // Shorter budgets for individual fields, keyed by coordinates such as Query.searchUsers
+    private Map<String, Duration> fields = new LinkedHashMap<>();
+
+    // With disconnect probing, operations run on this many threads rather than the request thread
+    private int executionThreads = 200;
+
+    // Getters and Setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getOperation() {
+        return operation;
+    }
+
+    public void setOperation(Duration operation) {
+        this.operation = operation;
+    }
+
+    public int getExecutionThreads() {
+        return executionThreads;
+    }
+
+    public void setExecutionThreads(int executionThreads) {
+        this.executionThreads = executionThreads;
+    }
+
+    public Map<String, Duration> getFields() {
+        return fields;
+    }
+
+    public void setFields(Map<String, Duration> fields) {
+        this.fields = fields;
+    }
+}
@@ -1,7 +1,10 @@
 package org.example.graphqlcrudapi.config;
 
 import org.example.graphqlcrudapi.exception.DuplicateEmailException;
+import org.example.graphqlcrudapi.exception.OperationTimeoutException;
+import org.example.graphqlcrudapi.exception.UnboundedQueryException;
 import org.example.graphqlcrudapi.exception.UserNotFoundException;
+import graphql.ErrorClassification;
 import graphql.GraphQLError;
 import graphql.GraphqlErrorBuilder;
 import graphql.schema.DataFetchingEnvironment;
@@ -11,9 +14,13 @@ import org.springframework.stereotype.Component;
 
 import jakarta.validation.ConstraintViolationException;
 
+import java.util.Map;
+
 @Component
 public class GlobalExceptionHandler extends DataFetcherExceptionResolverAdapter {
 
+    private static final ErrorClassification TIMEOUT = ErrorClassification.errorClassification("TIMEOUT");
+
     @Override
     protected GraphQLError resolveToSingleError(Throwable ex, DataFetchingEnvironment env) {
         if (ex instanceof UserNotFoundException) {
@@ -25,7 +32,7 @@ public class GlobalExceptionHandler extends DataFetcherExceptionResolverAdapter
                     .build();
         }
 
-        if (ex instanceof DuplicateEmailException) {
+        if (ex instanceof DuplicateEmailException || ex instanceof UnboundedQueryException) {
             return GraphqlErrorBuilder.newError()
                     .errorType(ErrorType.BAD_REQUEST)
                     .message(ex.getMessage())
@@ -34,6 +41,16 @@ public class GlobalExceptionHandler extends DataFetcherExceptionResolverAdapter
                     .build();
         }
 
+        if (ex instanceof OperationTimeoutException timeout) {
+            return GraphqlErrorBuilder.newError()
+                    .errorType(TIMEOUT)
+                    .message(ex.getMessage())
+                    .path(env.getExecutionStepInfo().getPath())
+                    .location(env.getField().getSourceLocation())
+                    .extensions(Map.of("reason", timeout.getReason().name()))
+                    .build();
+        }
+
         if (ex instanceof ConstraintViolationException) {
             StringBuilder message = new StringBuilder("Validation failed: ");
             ConstraintViolationException cve = (ConstraintViolationException) ex;
@@ -1,20 +1,48 @@
 package org.example.graphqlcrudapi.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.graphqlcrudapi.web.DateTimeEncoder;
+import org.example.graphqlcrudapi.web.DateTimeFormatInterceptor;
+import org.example.graphqlcrudapi.web.GraphQlResponseWriter;
+import org.example.graphqlcrudapi.web.GraphQlSseHandler;
+import org.example.graphqlcrudapi.web.StreamingGraphQlHttpHandler;
+import graphql.GraphQLContext;
+import graphql.execution.CoercedVariables;
+import graphql.language.StringValue;
 import graphql.scalars.ExtendedScalars;
 import graphql.schema.Coercing;
 import graphql.schema.CoercingParseLiteralException;
 import graphql.schema.CoercingParseValueException;
 import graphql.schema.CoercingSerializeException;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLFieldsContainer;
 import graphql.schema.GraphQLScalarType;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.graphql.GraphQlProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.graphql.execution.GraphQlSource;
 import org.springframework.graphql.execution.RuntimeWiringConfigurer;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.webmvc.GraphQlHttpHandler;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.function.RequestPredicates;
+import org.springframework.web.servlet.function.RouterFunction;
+import org.springframework.web.servlet.function.RouterFunctions;
+import org.springframework.web.servlet.function.ServerResponse;
+import reactor.core.scheduler.Scheduler;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Configuration
+@ImportRuntimeHints(NativeRuntimeHints.class)
 public class GraphQLConfig {
 
     @Bean
@@ -24,49 +52,109 @@ public class GraphQLConfig {
                 .scalar(ExtendedScalars.GraphQLLong);
     }
 
+    /**
+     * Write GraphQL responses straight to the output stream instead of through
+     * the generic JSON message converter.
+     */
+    @Bean
+    public GraphQlHttpHandler graphQlHttpHandler(WebGraphQlHandler webGraphQlHandler,
+                                                 GraphQlResponseWriter graphQlResponseWriter,
+                                                 @Value("${app.graphql.response.gzip:false}") boolean gzip,
+                                                 ObjectProvider<Scheduler> graphQlExecutionScheduler,
+                                                 @Value("${app.graphql.timeout.disconnect-probe-interval:0}") Duration disconnectProbeInterval) {
+        // Only present when GraphQL timeouts are enabled
+        return new StreamingGraphQlHttpHandler(webGraphQlHandler, graphQlResponseWriter, gzip,
+                graphQlExecutionScheduler.getIfAvailable(), disconnectProbeInterval);
+    }
+
+    @Bean
+    public GraphQlResponseWriter graphQlResponseWriter(ObjectMapper objectMapper, GraphQlSource graphQlSource) {
+        Set<String> fieldNames = graphQlSource.schema().getAllTypesAsList().stream()
+                .filter(type -> type instanceof GraphQLFieldsContainer)
+                .flatMap(type -> ((GraphQLFieldsContainer) type).getFieldDefinitions().stream())
+                .map(GraphQLFieldDefinition::getName)
+                .collect(Collectors.toSet());
+        return new GraphQlResponseWriter(objectMapper, fieldNames);
+    }
+
+    /**
+     * Serve the GraphQL endpoint over server-sent events for clients that ask for
+     * {@code text/event-stream}, so streamed results are delivered incrementally.
+     */
+    @Bean
+    public RouterFunction<ServerResponse> graphQlSseRouterFunction(WebGraphQlHandler webGraphQlHandler,
+                                                                   GraphQlProperties properties,
+                                                                   @Value("${app.graphql.stream.timeout:5m}") Duration timeout) {
+        GraphQlSseHandler handler = new GraphQlSseHandler(webGraphQlHandler, timeout);
+        return RouterFunctions.route()
+                .POST(properties.getPath(), RequestPredicates.accept(MediaType.TEXT_EVENT_STREAM), handler::handleRequest)
+                .build();
+    }
+
+    /**
+     * Per-request choice between text and epoch-millis {@code DateTime} values
+     */
+    @Bean
+    public DateTimeFormatInterceptor dateTimeFormatInterceptor() {
+        return new DateTimeFormatInterceptor();
+    }
+
     @Bean
     public GraphQLScalarType customDateTimeScalar() {
         return GraphQLScalarType.newScalar()
                 .name("DateTime")
                 .description("Custom LocalDateTime scalar")
-                .coercing(new Coercing<LocalDateTime, String>() {
-                    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+                .coercing(new DateTimeCoercing())
+                .build();
+    }
 
-                    @Override
-                    public String serialize(Object dataFetcherResult) throws CoercingSerializeException {
-                        if (dataFetcherResult instanceof LocalDateTime) {
-                            return ((LocalDateTime) dataFetcherResult).format(formatter);
-                        }
-                        throw new CoercingSerializeException("Expected LocalDateTime but was: " +
-                                (dataFetcherResult != null ? dataFetcherResult.getClass().getSimpleName() : "null"));
-                    }
+    /**
+     * Coercing for the {@code DateTime} scalar. A named class rather than an
+     * anonymous one so native-image hints can refer to it.
+     * <p>
+     * Values are written by {@link DateTimeEncoder}, as text or, when the request
+     * asked for it through {@link DateTimeFormatInterceptor}, as epoch
+     * milliseconds. Input is always text.
+     */
+    static class DateTimeCoercing implements Coercing<LocalDateTime, Object> {
 
-                    @Override
-                    public LocalDateTime parseValue(Object input) throws CoercingParseValueException {
-                        if (input instanceof String) {
-                            try {
-                                return LocalDateTime.parse((String) input, formatter);
-                            } catch (DateTimeParseException e) {
-                                throw new CoercingParseValueException("Invalid DateTime format. Expected: yyyy-MM-dd'T'HH:mm:ss, but was: " + input, e);
-                            }
-                        }
-                        throw new CoercingParseValueException("Expected String but was: " +
-                                (input != null ? input.getClass().getSimpleName() : "null"));
-                    }
+        @Override
+        public Object serialize(Object dataFetcherResult, GraphQLContext graphQLContext, Locale locale)
+                throws CoercingSerializeException {
+            if (dataFetcherResult instanceof LocalDateTime dateTime) {
+                return DateTimeEncoder.encode(dateTime, graphQLContext.getOrDefault(
+                        DateTimeEncoder.Format.class, DateTimeEncoder.Format.ISO));
+            }
+            throw new CoercingSerializeException("Expected LocalDateTime but was: " +
+                    (dataFetcherResult != null ? dataFetcherResult.getClass().getSimpleName() : "null"));
+        }
 
-                    @Override
-                    public LocalDateTime parseLiteral(Object input) throws CoercingParseLiteralException {
-                        if (input instanceof String) {
-                            try {
-                                return LocalDateTime.parse((String) input, formatter);
-                            } catch (DateTimeParseException e) {
-                                throw new CoercingParseLiteralException("Invalid DateTime format. Expected: yyyy-MM-dd'T'HH:mm:ss, but was: " + input, e);
-                            }
-                        }
-                        throw new CoercingParseLiteralException("Expected String but was: " +
-                                (input != null ? input.getClass().getSimpleName() : "null"));
-                    }
-                })
-                .build();
+        @Override
+        public LocalDateTime parseValue(Object input, GraphQLContext graphQLContext, Locale locale)
+                throws CoercingParseValueException {
+            if (input instanceof String text) {
+                try {
+                    return DateTimeEncoder.parse(text);
+                } catch (DateTimeParseException e) {
+                    throw new CoercingParseValueException("Invalid DateTime format. Expected: " + DateTimeEncoder.PATTERN + ", but was: " + input, e);
+                }
+            }
+            throw new CoercingParseValueException("Expected String but was: " +
+                    (input != null ? input.getClass().getSimpleName() : "null"));
+        }
+
+        @Override
+        public LocalDateTime parseLiteral(graphql.language.Value<?> input, CoercedVariables variables, GraphQLContext graphQLContext,
+                                          Locale locale) throws CoercingParseLiteralException {
+            if (input instanceof StringValue text) {
+                try {
+                    return DateTimeEncoder.parse(text.getValue());
+                } catch (DateTimeParseException e) {
+                    throw new CoercingParseLiteralException("Invalid DateTime format. Expected: " + DateTimeEncoder.PATTERN + ", but was: " + text.getValue(), e);
+                }
+            }
+            throw new CoercingParseLiteralException("Expected String but was: " +
+                    (input != null ? input.getClass().getSimpleName() : "null"));
+        }
     }
-}
\ No newline at end of file
+}
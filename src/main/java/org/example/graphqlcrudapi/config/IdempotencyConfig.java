@@ -0,0 +1,27 @@
+package org.example.graphqlcrudapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.graphqlcrudapi.web.IdempotencyInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * At-most-once mutations for clients that send an Idempotency-Key header
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.graphql.idempotency", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyConfig {
+
+    @Bean
+    public IdempotencyInterceptor idempotencyInterceptor(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${app.graphql.idempotency.max-entries:10000}") int maxEntries,
+            @Value("${app.graphql.idempotency.ttl:1h}") Duration ttl) {
+        return new IdempotencyInterceptor(maxEntries, ttl, meterRegistry.getIfAvailable());
+    }
+}
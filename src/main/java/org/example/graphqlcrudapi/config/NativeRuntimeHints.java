@@ -0,0 +1,37 @@
+package org.example.graphqlcrudapi.config;
+
+import org.example.graphqlcrudapi.dto.UserChange;
+import org.example.graphqlcrudapi.dto.UserChangePage;
+import org.example.graphqlcrudapi.dto.UserFilter;
+import org.example.graphqlcrudapi.dto.UserInput;
+import org.example.graphqlcrudapi.dto.UserOrderBy;
+import org.example.graphqlcrudapi.dto.UserPage;
+import org.example.graphqlcrudapi.entity.User;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Reflection and resource hints needed to run as a GraalVM native image.
+ * <p>
+ * graphql-java resolves {@code User} and the other output types' fields through
+ * getters and Spring GraphQL binds input arguments such as {@code UserInput} and
+ * {@code UserFilter} through their setters, neither of which the AOT engine can
+ * see statically. The schema files are loaded from the classpath
+ * at startup.
+ */
+class NativeRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                User.class, UserInput.class, UserFilter.class, UserOrderBy.class, UserPage.class,
+                UserChangePage.class, UserChange.class);
+
+        hints.reflection().registerType(GraphQLConfig.DateTimeCoercing.class,
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        hints.resources().registerPattern("graphql/*.graphqls");
+    }
+}
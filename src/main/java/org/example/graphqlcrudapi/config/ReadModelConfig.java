@@ -0,0 +1,94 @@
+package org.example.graphqlcrudapi.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.graphqlcrudapi.entity.User;
+import org.example.graphqlcrudapi.repository.UserRepository;
+import org.example.graphqlcrudapi.repository.sharding.ShardRouter;
+import org.example.graphqlcrudapi.service.InstanceLease;
+import org.example.graphqlcrudapi.service.UserReadModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Opt-in in-memory read model serving user reads, loaded once the application
+ * is ready and kept current by {@code UserService} after every commit. Only
+ * commits made by this instance reach it, so it claims the database for one
+ * instance: another one started against it with the read model enabled fails.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.users.read-model", name = "enabled", havingValue = "true")
+public class ReadModelConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadModelConfig.class);
+
+    @Bean
+    public UserReadModel userReadModel(@Value("${app.users.read-model.initial-capacity:1024}") int initialCapacity,
+                                       @Value("${app.users.read-model.off-heap:false}") boolean offHeap,
+                                       ObjectProvider<MeterRegistry> meterRegistry) {
+        UserReadModel readModel = new UserReadModel(initialCapacity, offHeap);
+        meterRegistry.ifAvailable(registry -> {
+            Gauge.builder("users.read_model.size", readModel, UserReadModel::size)
+                    .description("Users held by the read model")
+                    .register(registry);
+            Gauge.builder("users.read_model.memory", readModel, UserReadModel::memoryBytes)
+                    .description("Bytes held by the read model")
+                    .baseUnit("bytes")
+                    .register(registry);
+        });
+        return readModel;
+    }
+
+    /**
+     * Held while the model is in use; if another instance takes it over, the
+     * model may miss that instance's commits and reads go back to the database
+     */
+    @Bean(destroyMethod = "close")
+    public InstanceLease userReadModelLease(UserReadModel readModel, JdbcTemplate jdbcTemplate,
+                                            @Value("${app.users.read-model.lease-ttl:30s}") Duration ttl) {
+        return InstanceLease.acquire("user-read-model", jdbcTemplate, ttl, readModel::retire);
+    }
+
+    /**
+     * Copy all users into the read model in keyset pages. Mutations committed
+     * meanwhile are applied too and win by version; reads use the database
+     * until the load is done.
+     */
+    @Bean
+    public ApplicationListener<ApplicationReadyEvent> userReadModelLoader(
+            UserReadModel readModel,
+            UserRepository userRepository,
+            ShardRouter shardRouter,
+            @Value("${app.users.read-model.load-batch-size:10000}") int batchSize) {
+        return event -> {
+            long start = System.nanoTime();
+            long afterId = 0;
+            List<User> batch;
+            do {
+                long from = afterId;
+                batch = ShardRouter.merge(shardRouter.scatter(
+                        () -> userRepository.searchUsersAfter(null, null, null, from, batchSize)),
+                        Comparator.comparing(User::getId), batchSize);
+                batch.forEach(readModel::upsert);
+                if (!batch.isEmpty()) {
+                    afterId = batch.get(batch.size() - 1).getId();
+                }
+            } while (batch.size() == batchSize);
+            readModel.markReady();
+            log.info("Loaded {} users into the read model in {} ms ({} bytes)",
+                    readModel.size(), (System.nanoTime() - start) / 1_000_000, readModel.memoryBytes());
+        };
+    }
+}
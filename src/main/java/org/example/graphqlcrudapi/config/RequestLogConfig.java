@@ -0,0 +1,28 @@
+package org.example.graphqlcrudapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.graphqlcrudapi.monitoring.GraphQlRequestLogInstrumentation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Sampled per-operation request log, written off the request thread
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.graphql.request-log", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class RequestLogConfig {
+
+    @Bean
+    public GraphQlRequestLogInstrumentation graphQlRequestLogInstrumentation(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${app.graphql.request-log.sample-rate:0.01}") double sampleRate,
+            @Value("${app.graphql.request-log.slow-threshold:500ms}") Duration slowThreshold,
+            @Value("${app.graphql.request-log.buffer-size:8192}") int bufferSize) {
+        return new GraphQlRequestLogInstrumentation(sampleRate, slowThreshold, bufferSize, meterRegistry.getIfAvailable());
+    }
+}
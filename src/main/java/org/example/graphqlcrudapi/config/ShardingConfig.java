@@ -0,0 +1,115 @@
+package org.example.graphqlcrudapi.config;
+
+import org.example.graphqlcrudapi.repository.sharding.EmailShardDirectory;
+import org.example.graphqlcrudapi.repository.sharding.ShardRouter;
+import org.example.graphqlcrudapi.repository.sharding.ShardRoutingDataSource;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Storage layout for users. Without {@code app.sharding.enabled} everything
+ * lives in the single Spring Boot data source and the {@link ShardRouter} is a
+ * no-op. With it, the JPA data source routes every transaction to the shard it
+ * was pinned to, and each shard gets the migrated schema and an identity
+ * sequence that only produces ids it owns.
+ */
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardingConfig.class);
+
+    @Bean
+    public ShardRouter shardRouter(ShardingProperties properties, ObjectProvider<PlatformTransactionManager> transactionManager) {
+        if (!properties.isEnabled()) {
+            return ShardRouter.single();
+        }
+        if (properties.getShards().isEmpty()) {
+            throw new IllegalStateException("app.sharding.enabled is set but no app.sharding.shards are configured");
+        }
+        List<DataSource> shards = properties.getShards().stream()
+                .map(shard -> (DataSource) DataSourceBuilder.create()
+                        .url(shard.getUrl())
+                        .username(shard.getUsername())
+                        .password(shard.getPassword())
+                        .build())
+                .toList();
+        // Resolved on first scatter: the transaction manager itself depends on the routing data source
+        return new ShardRouter(shards, properties.getScatterThreads(), transactionManager::getObject);
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "app.sharding", name = "enabled", havingValue = "true")
+    public DataSource dataSource(ShardRouter shardRouter) {
+        List<DataSource> shards = IntStream.range(0, shardRouter.shardCount())
+                .mapToObj(shardRouter::shardDataSource)
+                .toList();
+        return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(shards));
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.sharding", name = "enabled", havingValue = "true")
+    public EmailShardDirectory emailShardDirectory(ShardRouter shardRouter, ShardingProperties properties) {
+        return new EmailShardDirectory(shardRouter, properties.getEmailReservationTimeout());
+    }
+
+    /**
+     * Spring Boot only migrates the data source it knows about, which routes to
+     * shard 0. Apply the same migrations to the other shards, then interleave the
+     * identity sequences so that shard {@code i} only hands out ids with
+     * {@code (id - 1) mod n == i}. Finally reclaim email directory entries a
+     * crash left without a user.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.sharding", name = "enabled", havingValue = "true")
+    public SmartInitializingSingleton shardSchemaInitializer(ShardRouter shardRouter, ObjectProvider<Flyway> flyway,
+                                                             EmailShardDirectory emailShardDirectory) {
+        return () -> {
+            int shardCount = shardRouter.shardCount();
+            Flyway primary = flyway.getIfAvailable();
+            for (int shard = 0; shard < shardCount; shard++) {
+                if (primary != null && shard > 0) {
+                    Flyway.configure()
+                            .configuration(primary.getConfiguration())
+                            .dataSource(shardRouter.shardDataSource(shard))
+                            .load()
+                            .migrate();
+                }
+                JdbcTemplate jdbcTemplate = new JdbcTemplate(shardRouter.shardDataSource(shard));
+                Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM users", Long.class);
+                long nextId = firstOwnedIdAfter(maxId, shard, shardCount);
+                jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + nextId);
+                jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN id SET INCREMENT BY " + shardCount);
+            }
+            int reclaimed = emailShardDirectory.reconcile();
+            if (reclaimed > 0) {
+                log.info("Reclaimed {} email directory entries without a user", reclaimed);
+            }
+        };
+    }
+
+    /**
+     * Smallest id greater than {@code maxId} that belongs to the given shard
+     */
+    static long firstOwnedIdAfter(long maxId, int shard, int shardCount) {
+        long candidate = maxId + 1;
+        return candidate + Math.floorMod(shard - (candidate - 1), (long) shardCount);
+    }
+}
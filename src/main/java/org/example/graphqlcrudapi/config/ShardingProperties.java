@@ -0,0 +1,92 @@
+package org.example.graphqlcrudapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings for spreading users over several databases
+ */
+@ConfigurationProperties(prefix = "app.sharding")
+public class ShardingProperties {
+
+    /**
+     * Connection settings of one shard
+     */
+    public static class Shard {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        // Getters and Setters
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+
+    private boolean enabled = false;
+
+    private List<Shard> shards = new ArrayList<>();
+
+    private int scatterThreads = 16;
+
+    private Duration emailReservationTimeout = Duration.ofMinutes(1);
+
+    // Getters and Setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public void setShards(List<Shard> shards) {
+        this.shards = shards;
+    }
+
+    public int getScatterThreads() {
+        return scatterThreads;
+    }
+
+    public void setScatterThreads(int scatterThreads) {
+        this.scatterThreads = scatterThreads;
+    }
+
+    public Duration getEmailReservationTimeout() {
+        return emailReservationTimeout;
+    }
+
+    public void setEmailReservationTimeout(Duration emailReservationTimeout) {
+        this.emailReservationTimeout = emailReservationTimeout;
+    }
+}
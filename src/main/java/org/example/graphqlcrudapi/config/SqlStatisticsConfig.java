@@ -0,0 +1,42 @@
+package org.example.graphqlcrudapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.graphqlcrudapi.monitoring.HibernateSqlStatistics;
+import org.example.graphqlcrudapi.monitoring.SqlStatisticsInstrumentation;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.jpa.boot.spi.JpaSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Per-operation SQL accounting, in place of logging every statement
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.graphql.sql-stats", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SqlStatisticsConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer sqlStatisticsHibernateCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, new HibernateSqlStatistics.Inspector());
+            properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, HibernateSqlStatistics.JdbcTimer.class.getName());
+            properties.put(JpaSettings.INTEGRATOR_PROVIDER,
+                    (IntegratorProvider) () -> List.of(new HibernateSqlStatistics.RowCounter()));
+        };
+    }
+
+    @Bean
+    public SqlStatisticsInstrumentation sqlStatisticsInstrumentation(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${app.graphql.sql-stats.n-plus-one-threshold:10}") int nPlusOneThreshold,
+            @Value("${app.graphql.sql-stats.extension:false}") boolean responseExtension) {
+        return new SqlStatisticsInstrumentation(meterRegistry.getIfAvailable(), nPlusOneThreshold, responseExtension);
+    }
+}
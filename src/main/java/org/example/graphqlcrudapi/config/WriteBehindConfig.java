@@ -0,0 +1,42 @@
+package org.example.graphqlcrudapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.graphqlcrudapi.repository.UserChangeOutboxRepository;
+import org.example.graphqlcrudapi.repository.UserRepository;
+import org.example.graphqlcrudapi.repository.sharding.ShardRouter;
+import org.example.graphqlcrudapi.service.UserChangeRelay;
+import org.example.graphqlcrudapi.service.UserReadModel;
+import org.example.graphqlcrudapi.service.UserUpdateJournal;
+import org.example.graphqlcrudapi.service.UserWriteBehind;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Opt-in group commit for {@code updateUser}
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.users.write-behind", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(WriteBehindProperties.class)
+public class WriteBehindConfig {
+
+    @Bean(destroyMethod = "close")
+    public UserWriteBehind userWriteBehind(UserRepository userRepository,
+                                           UserChangeOutboxRepository outboxRepository,
+                                           UserChangeRelay changeRelay,
+                                           ShardRouter shardRouter,
+                                           PlatformTransactionManager transactionManager,
+                                           WriteBehindProperties properties,
+                                           ObjectProvider<UserReadModel> readModel,
+                                           ObjectProvider<MeterRegistry> meterRegistry) {
+        return new UserWriteBehind(userRepository, outboxRepository, changeRelay, shardRouter, transactionManager,
+                new UserUpdateJournal(properties.getJournalDirectory()),
+                readModel.getIfAvailable(),
+                properties.getFlushInterval(),
+                properties.getMaxBatch(),
+                meterRegistry.getIfAvailable());
+    }
+}
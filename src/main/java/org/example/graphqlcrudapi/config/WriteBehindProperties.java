@@ -0,0 +1,55 @@
+package org.example.graphqlcrudapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Settings for buffering user updates and writing them to the database in groups
+ */
+@ConfigurationProperties(prefix = "app.users.write-behind")
+public class WriteBehindProperties {
+
+    private boolean enabled = false;
+
+    private Path journalDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "graphql-crud-api", "write-behind");
+
+    private Duration flushInterval = Duration.ofMillis(50);
+
+    private int maxBatch = 500;
+
+    // Getters and Setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Path getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    public void setJournalDirectory(Path journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public int getMaxBatch() {
+        return maxBatch;
+    }
+
+    public void setMaxBatch(int maxBatch) {
+        this.maxBatch = maxBatch;
+    }
+}
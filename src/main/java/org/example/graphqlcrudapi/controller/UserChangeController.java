@@ -0,0 +1,70 @@
+package org.example.graphqlcrudapi.controller;
+
+import org.example.graphqlcrudapi.dto.UserChange;
+import org.example.graphqlcrudapi.dto.UserChangePage;
+import org.example.graphqlcrudapi.service.InstanceLease;
+import org.example.graphqlcrudapi.service.UserChangeLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.SubscriptionMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+@Controller
+public class UserChangeController {
+
+    private static final int DEFAULT_LIMIT = 100;
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final UserChangeLog changeLog;
+
+    private final InstanceLease lease;
+
+    @Autowired
+    public UserChangeController(UserChangeLog changeLog, @Qualifier("userChangeLogLease") InstanceLease lease) {
+        this.changeLog = changeLog;
+        this.lease = lease;
+    }
+
+    /**
+     * Get the user changes made after the given cursor
+     */
+    @QueryMapping
+    public UserChangePage userChanges(@Argument Long since, @Argument Integer limit) {
+        checkLease();
+        int pageSize = limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(limit, MAX_LIMIT));
+        return changeLog.read(since == null ? 0 : since, pageSize);
+    }
+
+    /**
+     * Replay every user change made after the given cursor, up to the end of the log
+     */
+    @SubscriptionMapping("userChanges")
+    public Flux<UserChange> replayUserChanges(@Argument Long since) {
+        checkLease();
+        long end = changeLog.lastSequence();
+        return Flux.<UserChangePage, Long>generate(() -> since == null ? 0L : since, (cursor, sink) -> {
+                    UserChangePage page = cursor < end ? changeLog.read(cursor, MAX_LIMIT) : null;
+                    if (page == null || page.getChanges().isEmpty()) {
+                        sink.complete();
+                        return cursor;
+                    }
+                    sink.next(page);
+                    return page.getNextCursor();
+                })
+                .concatMapIterable(UserChangePage::getChanges)
+                .takeWhile(change -> change.getSequence() <= end)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // Without the lease the relay has stopped, so this log would silently fall behind
+    private void checkLease() {
+        if (!lease.isHeld()) {
+            throw new IllegalStateException("The user change log moved to another instance");
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package org.example.graphqlcrudapi.controller;
 
+import org.example.graphqlcrudapi.dto.UserFilter;
 import org.example.graphqlcrudapi.dto.UserInput;
+import org.example.graphqlcrudapi.dto.UserOrderBy;
+import org.example.graphqlcrudapi.dto.UserPage;
 import org.example.graphqlcrudapi.entity.User;
 import org.example.graphqlcrudapi.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.graphql.data.method.annotation.Argument;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.SubscriptionMapping;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.annotation.Validated;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
@@ -22,9 +29,13 @@ public class UserController {
 
     private final UserService userService;
 
+    private final int streamBatchSize;
+
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService,
+                          @Value("${app.graphql.stream.batch-size:100}") int streamBatchSize) {
         this.userService = userService;
+        this.streamBatchSize = streamBatchSize;
     }
 
     // ========== QUERIES ==========
@@ -71,6 +82,16 @@ public class UserController {
         return userService.searchUsers(name, email, phone);
     }
 
+    /**
+     * Find users by filter, with sorting and a page size
+     */
+    @QueryMapping
+    public UserPage findUsers(@Argument UserFilter filter,
+                              @Argument UserOrderBy orderBy,
+                              @Argument Integer first) {
+        return userService.findUsers(filter, orderBy, first);
+    }
+
     /**
      * Get total user count
      */
@@ -120,4 +141,47 @@ public class UserController {
     public Boolean deleteUser(@Argument @NotNull Long id) {
         return userService.deleteUser(id);
     }
+
+    // ========== SUBSCRIPTIONS ==========
+
+    /**
+     * Stream all users, one batch at a time
+     */
+    @SubscriptionMapping("getAllUsers")
+    public Flux<User> streamAllUsers() {
+        return streamUsers(null, null, null);
+    }
+
+    /**
+     * Stream users matching multiple criteria, one batch at a time
+     */
+    @SubscriptionMapping("searchUsers")
+    public Flux<User> streamSearchUsers(@Argument String name,
+                                        @Argument String email,
+                                        @Argument String phone) {
+        return streamUsers(name, email, phone);
+    }
+
+    /**
+     * Emit matching users in id order, fetching the next keyset batch only once
+     * the previous one has been requested downstream, so the first rows reach
+     * the client without waiting for the whole result.
+     */
+    private Flux<User> streamUsers(String name, String email, String phone) {
+        return Flux.<List<User>, Long>generate(() -> 0L, (afterId, sink) -> {
+                    if (afterId < 0) {
+                        sink.complete();
+                        return afterId;
+                    }
+                    List<User> batch = userService.searchUsersAfter(name, email, phone, afterId, streamBatchSize);
+                    if (batch.isEmpty()) {
+                        sink.complete();
+                        return afterId;
+                    }
+                    sink.next(batch);
+                    return batch.size() < streamBatchSize ? -1L : batch.get(batch.size() - 1).getId();
+                })
+                .concatMapIterable(batch -> batch)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
 }
\ No newline at end of file
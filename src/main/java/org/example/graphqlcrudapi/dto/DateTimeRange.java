@@ -0,0 +1,30 @@
+package org.example.graphqlcrudapi.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Time range with an inclusive start and an exclusive end; either may be open
+ */
+public class DateTimeRange {
+
+    private LocalDateTime from;
+
+    private LocalDateTime to;
+
+    // Getters and Setters
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+}
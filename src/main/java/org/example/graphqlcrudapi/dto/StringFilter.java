@@ -0,0 +1,52 @@
+package org.example.graphqlcrudapi.dto;
+
+import java.util.List;
+
+/**
+ * Conditions on a string field; all that are set must hold.
+ * {@code eq} and {@code in} are exact matches, {@code prefix} and
+ * {@code contains} ignore case.
+ */
+public class StringFilter {
+
+    private String eq;
+
+    private String prefix;
+
+    private String contains;
+
+    private List<String> in;
+
+    // Getters and Setters
+    public String getEq() {
+        return eq;
+    }
+
+    public void setEq(String eq) {
+        this.eq = eq;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String getContains() {
+        return contains;
+    }
+
+    public void setContains(String contains) {
+        this.contains = contains;
+    }
+
+    public List<String> getIn() {
+        return in;
+    }
+
+    public void setIn(List<String> in) {
+        this.in = in;
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.graphqlcrudapi.dto;
+
+import org.example.graphqlcrudapi.entity.UserChangeOp;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One entry of the user change log. Changed fields are kept as a bit mask;
+ * the GraphQL layer sees them as a list of field names.
+ */
+public class UserChange {
+
+    public static final int NAME = 1;
+    public static final int EMAIL = 1 << 1;
+    public static final int PHONE = 1 << 2;
+    public static final int ADDRESS = 1 << 3;
+
+    private static final String[] FIELD_NAMES = {"name", "email", "phone", "address"};
+
+    private final long sequence;
+    private final UserChangeOp op;
+    private final long userId;
+    private final long version;
+    private final int changedFieldMask;
+    private final long timestamp;
+
+    public UserChange(long sequence, UserChangeOp op, long userId, long version, int changedFieldMask, long timestamp) {
+        this.sequence = sequence;
+        this.op = op;
+        this.userId = userId;
+        this.version = version;
+        this.changedFieldMask = changedFieldMask;
+        this.timestamp = timestamp;
+    }
+
+    // Getters
+    public long getSequence() {
+        return sequence;
+    }
+
+    public UserChangeOp getOp() {
+        return op;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getChangedFieldMask() {
+        return changedFieldMask;
+    }
+
+    /**
+     * Epoch milliseconds at which the change was made
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public List<String> getChangedFields() {
+        List<String> fields = new ArrayList<>(FIELD_NAMES.length);
+        for (int i = 0; i < FIELD_NAMES.length; i++) {
+            if ((changedFieldMask & (1 << i)) != 0) {
+                fields.add(FIELD_NAMES[i]);
+            }
+        }
+        return fields;
+    }
+
+    public LocalDateTime getChangedAt() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneOffset.UTC);
+    }
+
+    @Override
+    public String toString() {
+        return "UserChange{" +
+                "sequence=" + sequence +
+                ", op=" + op +
+                ", userId=" + userId +
+                ", version=" + version +
+                ", changedFields=" + getChangedFields() +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
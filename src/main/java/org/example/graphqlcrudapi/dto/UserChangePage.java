@@ -0,0 +1,38 @@
+package org.example.graphqlcrudapi.dto;
+
+import java.util.List;
+
+/**
+ * A page of the user change log, read from a cursor
+ */
+public class UserChangePage {
+
+    private final List<UserChange> changes;
+    private final long nextCursor;
+    private final boolean truncated;
+
+    public UserChangePage(List<UserChange> changes, long nextCursor, boolean truncated) {
+        this.changes = changes;
+        this.nextCursor = nextCursor;
+        this.truncated = truncated;
+    }
+
+    public List<UserChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * Cursor to pass as {@code since} to continue after this page
+     */
+    public long getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Whether changes after the requested cursor were already removed by
+     * retention, in which case the reader must resynchronize from a full read
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.graphqlcrudapi.dto;
+
+import java.util.List;
+
+/**
+ * Criteria for {@code findUsers}; all that are set must hold
+ */
+public class UserFilter {
+
+    private List<Long> ids;
+
+    private StringFilter name;
+
+    private StringFilter email;
+
+    private StringFilter phone;
+
+    private DateTimeRange createdAt;
+
+    private DateTimeRange updatedAt;
+
+    // Getters and Setters
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+
+    public StringFilter getName() {
+        return name;
+    }
+
+    public void setName(StringFilter name) {
+        this.name = name;
+    }
+
+    public StringFilter getEmail() {
+        return email;
+    }
+
+    public void setEmail(StringFilter email) {
+        this.email = email;
+    }
+
+    public StringFilter getPhone() {
+        return phone;
+    }
+
+    public void setPhone(StringFilter phone) {
+        this.phone = phone;
+    }
+
+    public DateTimeRange getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(DateTimeRange createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public DateTimeRange getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(DateTimeRange updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
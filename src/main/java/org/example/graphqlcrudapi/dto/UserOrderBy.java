@@ -0,0 +1,66 @@
+package org.example.graphqlcrudapi.dto;
+
+/**
+ * Sort order for {@code findUsers}. Ties are always broken by id.
+ */
+public class UserOrderBy {
+
+    /**
+     * Fields users can be sorted by
+     */
+    public enum Field {
+        ID("id"),
+        NAME("name"),
+        EMAIL("email"),
+        CREATED_AT("createdAt"),
+        UPDATED_AT("updatedAt");
+
+        private final String property;
+
+        Field(String property) {
+            this.property = property;
+        }
+
+        /**
+         * Entity attribute the field sorts on
+         */
+        public String getProperty() {
+            return property;
+        }
+    }
+
+    public enum Direction {
+        ASC,
+        DESC
+    }
+
+    private Field field = Field.ID;
+
+    private Direction direction = Direction.ASC;
+
+    // Constructors
+    public UserOrderBy() {
+    }
+
+    public UserOrderBy(Field field, Direction direction) {
+        this.field = field;
+        this.direction = direction;
+    }
+
+    // Getters and Setters
+    public Field getField() {
+        return field;
+    }
+
+    public void setField(Field field) {
+        this.field = field;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public void setDirection(Direction direction) {
+        this.direction = direction;
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.graphqlcrudapi.dto;
+
+import org.example.graphqlcrudapi.entity.User;
+
+import java.util.List;
+
+/**
+ * One page of {@code findUsers} results
+ */
+public class UserPage {
+
+    private final List<User> users;
+    private final boolean hasMore;
+    private final boolean capped;
+
+    public UserPage(List<User> users, boolean hasMore, boolean capped) {
+        this.users = users;
+        this.hasMore = hasMore;
+        this.capped = capped;
+    }
+
+    public List<User> getUsers() {
+        return users;
+    }
+
+    /**
+     * Whether more users match than were returned
+     */
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    /**
+     * Whether the page was cut below the requested size because no index
+     * serves the filter and sort
+     */
+    public boolean isCapped() {
+        return capped;
+    }
+}
@@ -40,6 +40,13 @@ public class User {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    @Version
+    private Long version;
+
+    // Set by a deferred write, so that the row keeps the time its update was accepted
+    @Transient
+    private LocalDateTime acceptedAt;
+
     // Constructors
     public User() {
     }
@@ -60,7 +67,15 @@ public class User {
 
     @PreUpdate
     protected void onUpdate() {
-        updatedAt = LocalDateTime.now();
+        updatedAt = acceptedAt != null ? acceptedAt : LocalDateTime.now();
+        acceptedAt = null;
+    }
+
+    /**
+     * Stamp the next update with the time it was accepted instead of the time it is written
+     */
+    public void acceptedUpdateAt(LocalDateTime acceptedAt) {
+        this.acceptedAt = acceptedAt;
     }
 
     // Getters and Setters
@@ -120,6 +135,14 @@ public class User {
         this.updatedAt = updatedAt;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "User{" +
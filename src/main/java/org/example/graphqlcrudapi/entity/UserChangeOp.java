@@ -0,0 +1,10 @@
+package org.example.graphqlcrudapi.entity;
+
+/**
+ * Kind of mutation recorded in the user change log
+ */
+public enum UserChangeOp {
+    CREATE,
+    UPDATE,
+    DELETE
+}
@@ -0,0 +1,69 @@
+package org.example.graphqlcrudapi.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Pending user change, written in the same transaction as the mutation itself
+ * and moved to the change log once that transaction has committed.
+ */
+@Entity
+@Table(name = "user_change_outbox")
+public class UserChangeOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private UserChangeOp op;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "user_version", nullable = false)
+    private Long userVersion;
+
+    @Column(name = "changed_fields", nullable = false)
+    private int changedFields;
+
+    @Column(name = "changed_at", nullable = false)
+    private long changedAt;
+
+    // Constructors
+    public UserChangeOutbox() {
+    }
+
+    public UserChangeOutbox(UserChangeOp op, Long userId, Long userVersion, int changedFields, long changedAt) {
+        this.op = op;
+        this.userId = userId;
+        this.userVersion = userVersion;
+        this.changedFields = changedFields;
+        this.changedAt = changedAt;
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public UserChangeOp getOp() {
+        return op;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getUserVersion() {
+        return userVersion;
+    }
+
+    public int getChangedFields() {
+        return changedFields;
+    }
+
+    public long getChangedAt() {
+        return changedAt;
+    }
+}
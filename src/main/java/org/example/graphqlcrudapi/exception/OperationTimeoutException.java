@@ -0,0 +1,21 @@
+package org.example.graphqlcrudapi.exception;
+
+import org.example.graphqlcrudapi.execution.ExecutionBudget;
+
+/**
+ * Thrown when GraphQL execution is aborted because its time budget ran out or
+ * the client disconnected
+ */
+public class OperationTimeoutException extends RuntimeException {
+
+    private final ExecutionBudget.Reason reason;
+
+    public OperationTimeoutException(String message, ExecutionBudget.Reason reason, Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+    }
+
+    public ExecutionBudget.Reason getReason() {
+        return reason;
+    }
+}
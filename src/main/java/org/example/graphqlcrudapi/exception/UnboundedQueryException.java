@@ -0,0 +1,10 @@
+package org.example.graphqlcrudapi.exception;
+
+/**
+ * Thrown when a user query could only be answered by scanning the whole table
+ */
+public class UnboundedQueryException extends RuntimeException {
+    public UnboundedQueryException(String message) {
+        super(message);
+    }
+}
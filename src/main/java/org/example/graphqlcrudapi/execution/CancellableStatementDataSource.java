@@ -0,0 +1,102 @@
+package org.example.graphqlcrudapi.execution;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Ties JDBC statements to the {@link ExecutionBudget} bound to the thread that
+ * creates them.
+ * <p>
+ * A statement created under a budget is registered with it until closed, so
+ * cancelling the budget calls {@link Statement#cancel()} on it, and each time
+ * it is executed it gets the remaining time as its query timeout, so the
+ * database stops on its own if the cancel is lost. Executing after the budget
+ * ran out fails straight away with a {@link SQLTimeoutException}. Statements
+ * created with no budget bound, such as those of background jobs, are returned
+ * as they are.
+ */
+public class CancellableStatementDataSource extends DelegatingDataSource {
+
+    public CancellableStatementDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(CancellableStatementDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+
+    private record ConnectionHandler(Connection target) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = CancellableStatementDataSource.invoke(target, method, args);
+            ExecutionBudget budget;
+            if (result instanceof Statement statement && (budget = ExecutionBudget.current()) != null) {
+                budget.register(statement);
+                return Proxy.newProxyInstance(CancellableStatementDataSource.class.getClassLoader(),
+                        new Class<?>[]{method.getReturnType()}, new StatementHandler(statement, budget));
+            }
+            return result;
+        }
+    }
+
+    private record StatementHandler(Statement target, ExecutionBudget budget) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                applyBudget();
+            } else if (name.equals("close")) {
+                budget.unregister(target);
+            }
+            return CancellableStatementDataSource.invoke(target, method, args);
+        }
+
+        private void applyBudget() throws SQLException {
+            ExecutionBudget.Reason reason = budget.cancelReason();
+            if (reason != null) {
+                throw new SQLTimeoutException(budget.timeout(reason, null).getMessage());
+            }
+            Duration remaining = budget.remaining();
+            if (remaining == null) {
+                return;
+            }
+            // Query timeouts are whole seconds; round up so a short budget isn't cut to zero, which means none
+            int seconds = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (remaining.toMillis() + 999) / 1000));
+            int current = target.getQueryTimeout();
+            if (current == 0 || current > seconds) {
+                target.setQueryTimeout(seconds);
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.example.graphqlcrudapi.execution;
+
+import org.example.graphqlcrudapi.exception.OperationTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Time budget for a piece of GraphQL execution, and the JDBC statements running
+ * under it.
+ * <p>
+ * Budgets form a chain: a request budget that only ends when the client goes
+ * away, the operation budget below it and a field budget below that. A child
+ * never outlives its parent's deadline, and cancelling any budget in the chain
+ * cancels the statements registered with it and with every budget below it.
+ * The innermost budget is bound to the executing thread so that
+ * {@link CancellableStatementDataSource} can find it.
+ */
+public final class ExecutionBudget {
+
+    /**
+     * Why the work under a budget was cancelled
+     */
+    public enum Reason {
+        TIMEOUT, CLIENT_DISCONNECT
+    }
+
+    /**
+     * GraphQLContext key under which the request budget is passed to execution
+     */
+    public static final String CONTEXT_KEY = ExecutionBudget.class.getName();
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionBudget.class);
+
+    private static final ThreadLocal<ExecutionBudget> CURRENT = new ThreadLocal<>();
+
+    private static final long UNBOUNDED = Long.MAX_VALUE;
+
+    private final ExecutionBudget parent;
+
+    private final String name;
+
+    private final Duration budget;
+
+    // Relative to System.nanoTime(), or UNBOUNDED
+    private final long deadline;
+
+    private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+
+    private volatile Reason cancelled;
+
+    private ExecutionBudget(ExecutionBudget parent, String name, Duration budget) {
+        this.parent = parent;
+        this.name = name;
+        this.budget = budget;
+        long own = budget != null ? System.nanoTime() + budget.toNanos() : UNBOUNDED;
+        this.deadline = parent != null ? Math.min(parent.deadline, own) : own;
+    }
+
+    /**
+     * A top-level budget of the given length, or without a deadline when
+     * {@code null} so that only {@link #cancel} ends it
+     */
+    public static ExecutionBudget start(String name, Duration budget) {
+        return new ExecutionBudget(null, name, budget);
+    }
+
+    /**
+     * A budget of the given length, nested in this one
+     */
+    public ExecutionBudget child(String name, Duration budget) {
+        return new ExecutionBudget(this, name, budget);
+    }
+
+    /**
+     * The budget bound to this thread, or {@code null}
+     */
+    public static ExecutionBudget current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Bind this budget to the current thread; returns the previous one for {@link #restore}
+     */
+    public ExecutionBudget bind() {
+        ExecutionBudget previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    public static void restore(ExecutionBudget previous) {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Cancel everything running under this budget. Only the first reason is kept.
+     */
+    public void cancel(Reason reason) {
+        if (cancelled != null) {
+            return;
+        }
+        cancelled = reason;
+        for (Statement statement : statements) {
+            try {
+                statement.cancel();
+            } catch (SQLException | RuntimeException ex) {
+                log.debug("Failed to cancel statement under {}", name, ex);
+            }
+        }
+    }
+
+    /**
+     * Why this budget or one of its parents was cancelled, or {@code null}.
+     * A deadline that has passed counts as a timeout even before the scheduled
+     * cancellation has fired.
+     */
+    public Reason cancelReason() {
+        for (ExecutionBudget budget = this; budget != null; budget = budget.parent) {
+            if (budget.cancelled != null) {
+                return budget.cancelled;
+            }
+        }
+        return deadline != UNBOUNDED && System.nanoTime() - deadline >= 0 ? Reason.TIMEOUT : null;
+    }
+
+    /**
+     * Throw if the work under this budget should stop
+     */
+    public void check() {
+        Reason reason = cancelReason();
+        if (reason != null) {
+            throw timeout(reason, null);
+        }
+    }
+
+    /**
+     * Time left until the deadline, or {@code null} when unbounded
+     */
+    public Duration remaining() {
+        return deadline != UNBOUNDED ? Duration.ofNanos(Math.max(0, deadline - System.nanoTime())) : null;
+    }
+
+    /**
+     * An exception describing why this budget ended, wrapping the failure it caused if any
+     */
+    public OperationTimeoutException timeout(Reason reason, Throwable cause) {
+        if (reason == Reason.CLIENT_DISCONNECT) {
+            return new OperationTimeoutException("Request was cancelled because the client disconnected", reason, cause);
+        }
+        ExecutionBudget owner = this;
+        while (owner != null && owner.cancelled == null) {
+            owner = owner.parent;
+        }
+        if (owner == null) {
+            // Not cancelled yet, so the deadline ran out; it belongs to the outermost budget sharing it
+            owner = this;
+            while (owner.parent != null && owner.parent.deadline == owner.deadline) {
+                owner = owner.parent;
+            }
+        }
+        String message = owner.budget != null
+                ? owner.name + " exceeded its time budget of " + owner.budget.toMillis() + "ms"
+                : owner.name + " timed out";
+        return new OperationTimeoutException(message, reason, cause);
+    }
+
+    void register(Statement statement) {
+        for (ExecutionBudget budget = this; budget != null; budget = budget.parent) {
+            budget.statements.add(statement);
+        }
+        Reason reason = cancelReason();
+        if (reason != null) {
+            cancel(reason);
+        }
+    }
+
+    void unregister(Statement statement) {
+        for (ExecutionBudget budget = this; budget != null; budget = budget.parent) {
+            budget.statements.remove(statement);
+        }
+    }
+}
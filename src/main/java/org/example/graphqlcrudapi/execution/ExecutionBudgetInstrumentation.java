@@ -0,0 +1,183 @@
+package org.example.graphqlcrudapi.execution;
+
+import graphql.ExecutionResult;
+import graphql.GraphQLContext;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.language.OperationDefinition;
+import graphql.schema.DataFetcher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.graphqlcrudapi.exception.OperationTimeoutException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts every GraphQL query and mutation under an {@link ExecutionBudget}.
+ * <p>
+ * The operation budget is nested in the request budget found in the
+ * GraphQLContext, if any, so a client disconnect reported by the HTTP handler
+ * cancels it too. Fields listed in {@code fieldBudgets} by their coordinates,
+ * such as {@code Query.searchUsers}, get a shorter budget of their own while
+ * their data fetcher runs. When a budget runs out its JDBC statements are
+ * cancelled, data fetchers that have not started fail straight away, and a
+ * fetcher failing because of the cancellation fails with an
+ * {@link OperationTimeoutException} instead. Subscriptions are left to the SSE
+ * stream timeout.
+ */
+public class ExecutionBudgetInstrumentation extends SimplePerformantInstrumentation implements AutoCloseable {
+
+    private final Duration operationBudget;
+
+    private final Map<String, Duration> fieldBudgets;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ScheduledThreadPoolExecutor timer;
+
+    public ExecutionBudgetInstrumentation(Duration operationBudget, Map<String, Duration> fieldBudgets,
+                                          MeterRegistry meterRegistry) {
+        this.operationBudget = operationBudget;
+        this.fieldBudgets = Map.copyOf(fieldBudgets);
+        this.meterRegistry = meterRegistry;
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "graphql-budget-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    @Override
+    public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+        return new State();
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(InstrumentationExecuteOperationParameters parameters,
+                                                                         InstrumentationState state) {
+        OperationDefinition operation = parameters.getExecutionContext().getOperationDefinition();
+        if (!(state instanceof State budgetState) || operation.getOperation() == OperationDefinition.Operation.SUBSCRIPTION) {
+            return SimpleInstrumentationContext.noOp();
+        }
+        GraphQLContext context = parameters.getExecutionContext().getGraphQLContext();
+        ExecutionBudget request = context.get(ExecutionBudget.CONTEXT_KEY);
+        String name = operation.getName() != null ? "Operation '" + operation.getName() + "'" : "Operation";
+        ExecutionBudget budget = request != null
+                ? request.child(name, operationBudget)
+                : ExecutionBudget.start(name, operationBudget);
+        budgetState.budget = budget;
+        ScheduledFuture<?> expiry = schedule(budget, operationBudget);
+        ExecutionBudget previous = budget.bind();
+        return SimpleInstrumentationContext.whenCompleted((result, error) -> {
+            expiry.cancel(false);
+            ExecutionBudget.restore(previous);
+            ExecutionBudget.Reason reason = budget.cancelReason();
+            if (reason == null) {
+                reason = budgetState.fieldCancelled;
+            }
+            if (reason != null && meterRegistry != null) {
+                Counter.builder("graphql.operation.cancelled")
+                        .description("GraphQL operations cut short by their time budget or a client disconnect")
+                        .tag("reason", reason.name().toLowerCase())
+                        .register(meterRegistry)
+                        .increment();
+            }
+        });
+    }
+
+    @Override
+    public DataFetcher<?> instrumentDataFetcher(DataFetcher<?> dataFetcher, InstrumentationFieldFetchParameters parameters,
+                                                InstrumentationState state) {
+        if (parameters.isTrivialDataFetcher() || !(state instanceof State budgetState) || budgetState.budget == null) {
+            return dataFetcher;
+        }
+        String coordinates = parameters.getExecutionStepInfo().getObjectType().getName()
+                + '.' + parameters.getExecutionStepInfo().getFieldDefinition().getName();
+        Duration fieldBudget = fieldBudgets.get(coordinates);
+        ExecutionBudget operation = budgetState.budget;
+        return environment -> {
+            ExecutionBudget budget = fieldBudget != null
+                    ? operation.child("Field '" + coordinates + "'", fieldBudget)
+                    : operation;
+            ExecutionBudget.Reason expired = budget.cancelReason();
+            if (expired != null) {
+                budgetState.fieldCancelled = expired;
+                throw budget.timeout(expired, null);
+            }
+            ScheduledFuture<?> expiry = fieldBudget != null ? schedule(budget, fieldBudget) : null;
+            ExecutionBudget previous = budget.bind();
+            try {
+                Object value = dataFetcher.get(environment);
+                // Annotated controllers report failures through a failed future rather than throwing
+                if (value instanceof CompletionStage<?> stage) {
+                    CompletableFuture<Object> result = new CompletableFuture<>();
+                    stage.whenComplete((fetched, ex) -> {
+                        if (ex != null) {
+                            result.completeExceptionally(translate(budgetState, budget,
+                                    ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex));
+                        } else {
+                            result.complete(fetched);
+                        }
+                    });
+                    return result;
+                }
+                return value;
+            } catch (Exception ex) {
+                Throwable translated = translate(budgetState, budget, ex);
+                if (translated instanceof OperationTimeoutException timeout) {
+                    throw timeout;
+                }
+                throw ex;
+            } finally {
+                ExecutionBudget.restore(previous);
+                if (expiry != null) {
+                    expiry.cancel(false);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    private static Throwable translate(State state, ExecutionBudget budget, Throwable ex) {
+        // Thrown by ExecutionBudget.check() in the fetcher itself
+        if (ex instanceof OperationTimeoutException timeout) {
+            state.fieldCancelled = timeout.getReason();
+            return ex;
+        }
+        ExecutionBudget.Reason reason = budget.cancelReason();
+        if (reason == null) {
+            return ex;
+        }
+        state.fieldCancelled = reason;
+        return budget.timeout(reason, ex);
+    }
+
+    private ScheduledFuture<?> schedule(ExecutionBudget budget, Duration length) {
+        return timer.schedule(() -> budget.cancel(ExecutionBudget.Reason.TIMEOUT), length.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private static final class State implements InstrumentationState {
+
+        private volatile ExecutionBudget budget;
+
+        // Set when a field ran out of its own budget while the operation's was left
+        private volatile ExecutionBudget.Reason fieldCancelled;
+    }
+}
@@ -0,0 +1,192 @@
+package org.example.graphqlcrudapi.monitoring;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.ExecutionResult;
+import graphql.GraphQLError;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.language.OperationDefinition;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes one structured line per GraphQL operation to the {@code graphql.requests}
+ * logger, off the request thread.
+ * <p>
+ * Operations are sampled twice: a {@code sampleRate} share of them is picked
+ * when they start, and any operation that took {@code slowThreshold} or longer
+ * or returned errors is picked when it ends. Only picked operations build a
+ * record. Records go through a {@link RequestLogRingBuffer} to a background
+ * thread that formats and logs them; when the buffer is full they are dropped
+ * and counted in {@code graphql.request_log.dropped} instead of waiting.
+ * <p>
+ * Statement counts come from the {@link SqlStatementStats} that
+ * {@link SqlStatisticsInstrumentation} leaves in the GraphQLContext, and are
+ * absent when SQL statistics are disabled.
+ */
+public class GraphQlRequestLogInstrumentation extends SimplePerformantInstrumentation implements AutoCloseable {
+
+    /**
+     * One logged operation. {@code sampled} says why it was picked: head, slow or error.
+     */
+    public record Entry(long timestamp, String operation, String type, String hash, double durationMs,
+                        List<String> errors, Long statements, String sampled) {
+    }
+
+    private static final Logger requestLog = LoggerFactory.getLogger("graphql.requests");
+
+    private static final Logger log = LoggerFactory.getLogger(GraphQlRequestLogInstrumentation.class);
+
+    private static final String ANONYMOUS = "anonymous";
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final double sampleRate;
+
+    private final long slowThresholdNanos;
+
+    private final RequestLogRingBuffer<Entry> buffer;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    public GraphQlRequestLogInstrumentation(double sampleRate, Duration slowThreshold, int bufferSize,
+                                            MeterRegistry meterRegistry) {
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.buffer = new RequestLogRingBuffer<>(bufferSize);
+        if (meterRegistry != null) {
+            FunctionCounter.builder("graphql.request_log.dropped", buffer, RequestLogRingBuffer::dropped)
+                    .description("Request log records dropped because the log writer fell behind")
+                    .register(meterRegistry);
+        }
+        this.writer = new Thread(this::drain, "graphql-request-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+        return new State(System.nanoTime(), sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(InstrumentationExecuteOperationParameters parameters,
+                                                                         InstrumentationState state) {
+        if (state instanceof State logState) {
+            OperationDefinition operation = parameters.getExecutionContext().getOperationDefinition();
+            logState.operation = operation.getName();
+            logState.type = operation.getOperation().name().toLowerCase();
+        }
+        return SimpleInstrumentationContext.noOp();
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> instrumentExecutionResult(ExecutionResult executionResult,
+                                                                        InstrumentationExecutionParameters parameters,
+                                                                        InstrumentationState state) {
+        if (!(state instanceof State logState)) {
+            return CompletableFuture.completedFuture(executionResult);
+        }
+        long elapsed = System.nanoTime() - logState.start;
+        String sampled = !executionResult.getErrors().isEmpty() ? "error"
+                : elapsed >= slowThresholdNanos ? "slow"
+                : logState.headSampled ? "head"
+                : null;
+        if (sampled != null) {
+            String operation = logState.operation != null ? logState.operation
+                    : parameters.getOperation() != null ? parameters.getOperation() : ANONYMOUS;
+            SqlStatementStats stats = parameters.getGraphQLContext().get(SqlStatementStats.class);
+            buffer.offer(new Entry(System.currentTimeMillis(), operation, logState.type, hash(parameters.getQuery()),
+                    elapsed / 1_000_000.0, errorTypes(executionResult),
+                    stats != null ? stats.getTotal().getStatements() : null, sampled));
+        }
+        return CompletableFuture.completedFuture(executionResult);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void drain() {
+        while (true) {
+            Entry entry = buffer.poll();
+            if (entry != null) {
+                write(entry);
+            } else if (running) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void write(Entry entry) {
+        try {
+            requestLog.info(objectMapper.writeValueAsString(entry));
+        } catch (JsonProcessingException | RuntimeException ex) {
+            log.warn("Failed to write request log record for operation '{}'", entry.operation(), ex);
+        }
+    }
+
+    private static List<String> errorTypes(ExecutionResult result) {
+        List<String> types = new ArrayList<>(1);
+        for (GraphQLError error : result.getErrors()) {
+            String type = String.valueOf(error.getErrorType());
+            if (!types.contains(type)) {
+                types.add(type);
+            }
+        }
+        return types;
+    }
+
+    /**
+     * 64-bit FNV-1a of the document, enough to group operations sent with the same text
+     */
+    private static String hash(String document) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < document.length(); i++) {
+            hash ^= document.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return String.format("%016x", hash);
+    }
+
+    private static final class State implements InstrumentationState {
+
+        private final long start;
+
+        private final boolean headSampled;
+
+        private String operation;
+
+        private String type;
+
+        private State(long start, boolean headSampled) {
+            this.start = start;
+            this.headSampled = headSampled;
+        }
+    }
+}
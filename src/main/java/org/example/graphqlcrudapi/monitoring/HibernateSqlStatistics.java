@@ -0,0 +1,96 @@
+package org.example.graphqlcrudapi.monitoring;
+
+import org.hibernate.SessionEventListener;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Hibernate hooks feeding {@link SqlStatementStats}: a statement inspector
+ * counts every statement Hibernate prepares, a session listener times JDBC
+ * executions and a post-load listener counts loaded entity rows.
+ */
+public final class HibernateSqlStatistics {
+
+    private HibernateSqlStatistics() {
+    }
+
+    /**
+     * Counts statements; never rewrites them
+     */
+    public static class Inspector implements StatementInspector {
+
+        @Override
+        public String inspect(String sql) {
+            SqlStatementStats.statementPrepared(sql);
+            return sql;
+        }
+    }
+
+    /**
+     * Times statement and batch executions. Hibernate creates one per session.
+     */
+    public static class JdbcTimer implements SessionEventListener {
+
+        private long startedAt;
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            startTiming();
+        }
+
+        @Override
+        public void jdbcExecuteStatementEnd() {
+            stopTiming();
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            startTiming();
+        }
+
+        @Override
+        public void jdbcExecuteBatchEnd() {
+            stopTiming();
+        }
+
+        private void startTiming() {
+            startedAt = SqlStatementStats.isRecording() ? System.nanoTime() : 0;
+        }
+
+        private void stopTiming() {
+            if (startedAt != 0) {
+                SqlStatementStats.jdbcTime(System.nanoTime() - startedAt);
+                startedAt = 0;
+            }
+        }
+    }
+
+    /**
+     * Counts every entity Hibernate materializes from a result set
+     */
+    public static class RowCounter implements Integrator, PostLoadEventListener {
+
+        @Override
+        public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+            sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class)
+                    .appendListeners(EventType.POST_LOAD, this);
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        }
+
+        @Override
+        public void onPostLoad(PostLoadEvent event) {
+            SqlStatementStats.rowsLoaded(1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.graphqlcrudapi.monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded lock-free queue between the threads executing GraphQL requests and
+ * the single thread writing the request log.
+ * <p>
+ * Producers claim a slot by advancing {@code tail} with a CAS and then publish
+ * the element into it; the consumer takes slots in order and frees them by
+ * advancing {@code head}. A producer that finds the buffer full drops its
+ * element and counts it rather than waiting, so a slow log never slows
+ * requests down.
+ */
+class RequestLogRingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    // Only written by the consumer
+    private volatile long head;
+
+    private final LongAdder dropped = new LongAdder();
+
+    RequestLogRingBuffer(int capacity) {
+        // Rounded up to a power of two
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Add an element unless the buffer is full; never blocks
+     */
+    boolean offer(T element) {
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (claimed - head >= slots.length()) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+        slots.set((int) claimed & mask, element);
+        return true;
+    }
+
+    /**
+     * Take the next element, or {@code null} if there is none yet. Only one
+     * thread may poll.
+     */
+    T poll() {
+        long next = head;
+        int index = (int) next & mask;
+        // A claimed slot stays null until its producer has published into it
+        T element = slots.get(index);
+        if (element == null) {
+            return null;
+        }
+        slots.set(index, null);
+        head = next + 1;
+        return element;
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+}
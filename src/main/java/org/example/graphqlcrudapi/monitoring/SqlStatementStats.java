@@ -0,0 +1,236 @@
+package org.example.graphqlcrudapi.monitoring;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * SQL work done on behalf of one GraphQL operation: statements, loaded rows
+ * and JDBC time, in total and per field, plus how often each distinct
+ * statement ran.
+ * <p>
+ * The Hibernate hooks in {@link HibernateSqlStatistics} report into the stats
+ * bound to the current thread by {@link SqlStatisticsInstrumentation}. Work the
+ * operation hands to other threads is counted when wrapped with
+ * {@link #propagate}; work outside an operation is not.
+ */
+public class SqlStatementStats {
+
+    private static final ThreadLocal<SqlStatementStats> CURRENT = new ThreadLocal<>();
+
+    private static final ThreadLocal<String> CURRENT_FIELD = new ThreadLocal<>();
+
+    // Distinct statement texts tracked per operation, to bound memory for odd workloads
+    private static final int MAX_DISTINCT_STATEMENTS = 256;
+
+    private final Counters total = new Counters();
+
+    private final Map<String, Counters> fields = new ConcurrentHashMap<>();
+
+    private final Map<String, StatementCount> statements = new ConcurrentHashMap<>();
+
+    /**
+     * Statement, row and time counters
+     */
+    public static final class Counters {
+
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder jdbcNanos = new LongAdder();
+
+        public long getStatements() {
+            return statements.sum();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public Duration getJdbcTime() {
+            return Duration.ofNanos(jdbcNanos.sum());
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("statements", getStatements());
+            map.put("rows", getRows());
+            map.put("jdbcTimeMs", jdbcNanos.sum() / 1_000_000.0);
+            return map;
+        }
+    }
+
+    /**
+     * A statement that ran at least the N+1 threshold number of times, and the
+     * field that first issued it
+     */
+    public record RepeatedStatement(String sql, String field, long count) {
+    }
+
+    private static final class StatementCount {
+
+        private final String field;
+        private final LongAdder count = new LongAdder();
+
+        StatementCount(String field) {
+            this.field = field;
+        }
+    }
+
+    void bind() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * Unbind from the calling thread, unless it has been bound to other stats since
+     */
+    void unbind() {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+            CURRENT_FIELD.remove();
+        }
+    }
+
+    /**
+     * Attribute work on this thread to the given field until restored; returns
+     * the previous field
+     */
+    static String enterField(String field) {
+        String previous = CURRENT_FIELD.get();
+        CURRENT_FIELD.set(field);
+        return previous;
+    }
+
+    static void restoreField(String previous) {
+        if (previous == null) {
+            CURRENT_FIELD.remove();
+        } else {
+            CURRENT_FIELD.set(previous);
+        }
+    }
+
+    /**
+     * Wrap work to run on another thread so that its SQL is counted in the
+     * stats, and under the field, of the calling thread
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> work) {
+        SqlStatementStats stats = CURRENT.get();
+        if (stats == null) {
+            return work;
+        }
+        String field = CURRENT_FIELD.get();
+        return () -> {
+            SqlStatementStats previous = CURRENT.get();
+            String previousField = enterField(field);
+            CURRENT.set(stats);
+            try {
+                return work.get();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+                restoreField(previousField);
+            }
+        };
+    }
+
+    static boolean isRecording() {
+        return CURRENT.get() != null;
+    }
+
+    static void statementPrepared(String sql) {
+        SqlStatementStats stats = CURRENT.get();
+        if (stats == null) {
+            return;
+        }
+        String field = CURRENT_FIELD.get();
+        stats.total.statements.increment();
+        if (field != null) {
+            stats.field(field).statements.increment();
+        }
+        StatementCount count = stats.statements.get(sql);
+        if (count == null && stats.statements.size() < MAX_DISTINCT_STATEMENTS) {
+            count = stats.statements.computeIfAbsent(sql, key -> new StatementCount(field));
+        }
+        if (count != null) {
+            count.count.increment();
+        }
+    }
+
+    static void rowsLoaded(long rows) {
+        SqlStatementStats stats = CURRENT.get();
+        if (stats == null) {
+            return;
+        }
+        stats.total.rows.add(rows);
+        String field = CURRENT_FIELD.get();
+        if (field != null) {
+            stats.field(field).rows.add(rows);
+        }
+    }
+
+    static void jdbcTime(long nanos) {
+        SqlStatementStats stats = CURRENT.get();
+        if (stats == null) {
+            return;
+        }
+        stats.total.jdbcNanos.add(nanos);
+        String field = CURRENT_FIELD.get();
+        if (field != null) {
+            stats.field(field).jdbcNanos.add(nanos);
+        }
+    }
+
+    private Counters field(String field) {
+        return fields.computeIfAbsent(field, key -> new Counters());
+    }
+
+    public Counters getTotal() {
+        return total;
+    }
+
+    public Map<String, Counters> getFields() {
+        return fields;
+    }
+
+    /**
+     * Statements that ran at least {@code threshold} times in this operation,
+     * most frequent first. Such a statement is issued once per result element,
+     * the signature of an N+1 access pattern.
+     */
+    public List<RepeatedStatement> repeatedStatements(int threshold) {
+        return statements.entrySet().stream()
+                .filter(entry -> entry.getValue().count.sum() >= threshold)
+                .map(entry -> new RepeatedStatement(entry.getKey(), entry.getValue().field, entry.getValue().count.sum()))
+                .sorted(Comparator.comparingLong(RepeatedStatement::count).reversed())
+                .toList();
+    }
+
+    /**
+     * Summary for the {@code sql} response extension
+     */
+    Map<String, Object> toExtension(List<RepeatedStatement> repeated) {
+        Map<String, Object> extension = total.toMap();
+        Map<String, Object> byField = new LinkedHashMap<>();
+        fields.forEach((field, counters) -> byField.put(field, counters.toMap()));
+        extension.put("fields", byField);
+        if (!repeated.isEmpty()) {
+            extension.put("nPlusOne", repeated.stream()
+                    .map(statement -> {
+                        Map<String, Object> map = new LinkedHashMap<>();
+                        map.put("field", statement.field());
+                        map.put("count", statement.count());
+                        map.put("sql", statement.sql());
+                        return map;
+                    })
+                    .toList());
+        }
+        return extension;
+    }
+}
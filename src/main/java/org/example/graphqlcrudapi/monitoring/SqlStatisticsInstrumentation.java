@@ -0,0 +1,200 @@
+package org.example.graphqlcrudapi.monitoring;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.execution.ExecutionStepInfo;
+import graphql.language.Field;
+import graphql.language.OperationDefinition;
+import graphql.language.Selection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Accounts the SQL issued by each GraphQL query and mutation.
+ * <p>
+ * A fresh {@link SqlStatementStats} is bound to the executing thread for the
+ * duration of the operation, and to each non-trivial data fetcher while it runs
+ * so work can be attributed to fields. When the operation completes, statement,
+ * row and JDBC time metrics are recorded, and statements that ran
+ * {@code nPlusOneThreshold} times or more are reported as likely N+1 access.
+ * Subscriptions fetch their data after the operation returns and are not counted.
+ * <p>
+ * Operation names and aliases are chosen by clients, so metrics are tagged with
+ * schema names only, which keeps the number of meters bounded: {@code root} is
+ * the root field the operation selects ({@code multiple} if it selects several),
+ * and {@code field} is the {@code Type.field} that issued a repeated statement.
+ */
+public class SqlStatisticsInstrumentation extends SimplePerformantInstrumentation {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatisticsInstrumentation.class);
+
+    private static final String ANONYMOUS = "anonymous";
+
+    private static final String MULTIPLE = "multiple";
+
+    private static final String OTHER = "other";
+
+    private static final int MAX_REPORTED = 1024;
+
+    private final MeterRegistry meterRegistry;
+
+    private final int nPlusOneThreshold;
+
+    private final boolean responseExtension;
+
+    // Operation and field pairs already logged as N+1, so each is only logged once
+    private final Set<String> reported = ConcurrentHashMap.newKeySet();
+
+    public SqlStatisticsInstrumentation(MeterRegistry meterRegistry, int nPlusOneThreshold, boolean responseExtension) {
+        this.meterRegistry = meterRegistry;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.responseExtension = responseExtension;
+    }
+
+    @Override
+    public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+        return new State();
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(InstrumentationExecuteOperationParameters parameters,
+                                                                         InstrumentationState state) {
+        OperationDefinition operation = parameters.getExecutionContext().getOperationDefinition();
+        if (!(state instanceof State sqlState) || operation.getOperation() == OperationDefinition.Operation.SUBSCRIPTION) {
+            return SimpleInstrumentationContext.noOp();
+        }
+        sqlState.operationName = operation.getName() != null ? operation.getName() : ANONYMOUS;
+        sqlState.root = rootField(operation);
+        SqlStatementStats stats = new SqlStatementStats();
+        sqlState.stats = stats;
+        stats.bind();
+        // For the request log
+        parameters.getExecutionContext().getGraphQLContext().put(SqlStatementStats.class, stats);
+        // Dispatch returns on the binding thread; completion can happen on another one
+        return new InstrumentationContext<>() {
+            @Override
+            public void onDispatched(CompletableFuture<ExecutionResult> result) {
+                stats.unbind();
+            }
+
+            @Override
+            public void onCompleted(ExecutionResult result, Throwable t) {
+                stats.unbind();
+            }
+        };
+    }
+
+    @Override
+    public InstrumentationContext<Object> beginFieldFetch(InstrumentationFieldFetchParameters parameters, InstrumentationState state) {
+        if (parameters.isTrivialDataFetcher() || !(state instanceof State sqlState) || sqlState.stats == null) {
+            return SimpleInstrumentationContext.noOp();
+        }
+        ExecutionStepInfo step = parameters.getEnvironment().getExecutionStepInfo();
+        String field = String.join("/", step.getPath().getKeysOnly());
+        sqlState.coordinates.putIfAbsent(field, step.getObjectType().getName() + '.' + step.getFieldDefinition().getName());
+        String previous = SqlStatementStats.enterField(field);
+        return SimpleInstrumentationContext.whenDispatched(fetched -> SqlStatementStats.restoreField(previous));
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> instrumentExecutionResult(ExecutionResult executionResult,
+                                                                        InstrumentationExecutionParameters parameters,
+                                                                        InstrumentationState state) {
+        if (!(state instanceof State sqlState) || sqlState.stats == null) {
+            return CompletableFuture.completedFuture(executionResult);
+        }
+        SqlStatementStats stats = sqlState.stats;
+        List<SqlStatementStats.RepeatedStatement> repeated = stats.repeatedStatements(nPlusOneThreshold);
+        record(sqlState, stats, repeated);
+        if (!responseExtension) {
+            return CompletableFuture.completedFuture(executionResult);
+        }
+        return CompletableFuture.completedFuture(ExecutionResultImpl.newExecutionResult()
+                .from(executionResult)
+                .addExtension("sql", stats.toExtension(repeated))
+                .build());
+    }
+
+    private void record(State state, SqlStatementStats stats, List<SqlStatementStats.RepeatedStatement> repeated) {
+        SqlStatementStats.Counters total = stats.getTotal();
+        if (meterRegistry != null) {
+            DistributionSummary.builder("graphql.sql.statements")
+                    .description("SQL statements issued per GraphQL operation")
+                    .tag("root", state.root)
+                    .register(meterRegistry)
+                    .record(total.getStatements());
+            DistributionSummary.builder("graphql.sql.rows")
+                    .description("Entity rows loaded per GraphQL operation")
+                    .tag("root", state.root)
+                    .register(meterRegistry)
+                    .record(total.getRows());
+            Timer.builder("graphql.sql.jdbc.time")
+                    .description("JDBC execution time per GraphQL operation")
+                    .tag("root", state.root)
+                    .register(meterRegistry)
+                    .record(total.getJdbcTime());
+        }
+        for (SqlStatementStats.RepeatedStatement statement : repeated) {
+            String field = statement.field() != null ? statement.field() : "";
+            if (meterRegistry != null) {
+                Counter.builder("graphql.sql.n_plus_one")
+                        .description("GraphQL operations that repeated a SQL statement per result element")
+                        .tag("root", state.root)
+                        .tag("field", state.coordinates.getOrDefault(field, OTHER))
+                        .register(meterRegistry)
+                        .increment();
+            }
+            if (reported.size() < MAX_REPORTED && reported.add(state.operationName + '/' + field)) {
+                log.warn("Possible N+1 in operation '{}', field '{}': statement ran {} times: {}",
+                        state.operationName, field, statement.count(), statement.sql());
+            }
+        }
+    }
+
+    /**
+     * Name of the root field the operation selects, ignoring aliases
+     */
+    private static String rootField(OperationDefinition operation) {
+        String root = null;
+        for (Selection<?> selection : operation.getSelectionSet().getSelections()) {
+            if (!(selection instanceof Field field)) {
+                return OTHER;
+            }
+            if (root != null && !root.equals(field.getName())) {
+                return MULTIPLE;
+            }
+            root = field.getName();
+        }
+        return root != null ? root : OTHER;
+    }
+
+    private static final class State implements InstrumentationState {
+
+        private String operationName;
+
+        private String root;
+
+        // Result path of each fetched field to its schema coordinate
+        private final Map<String, String> coordinates = new ConcurrentHashMap<>();
+
+        private SqlStatementStats stats;
+    }
+}
@@ -0,0 +1,17 @@
+package org.example.graphqlcrudapi.repository;
+
+import org.example.graphqlcrudapi.entity.UserChangeOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface UserChangeOutboxRepository extends JpaRepository<UserChangeOutbox, Long> {
+
+    /**
+     * Oldest pending changes first
+     */
+    List<UserChangeOutbox> findAllByOrderByIdAsc(Pageable pageable);
+}
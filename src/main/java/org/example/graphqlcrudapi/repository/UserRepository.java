@@ -1,16 +1,19 @@
 package org.example.graphqlcrudapi.repository;
 
+import jakarta.persistence.LockModeType;
 import org.example.graphqlcrudapi.entity.User;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
 
     /**
      * Find user by email
@@ -18,9 +21,11 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
 
     /**
-     * Find users by name containing (case insensitive)
+     * Find users by name containing (case insensitive), ordered by id
      */
-    List<User> findByNameContainingIgnoreCase(String name);
+    default List<User> searchUsersByName(String name) {
+        return findAll(UserSpecifications.nameContains(name), Sort.by("id"));
+    }
 
     /**
      * Check if email exists
@@ -33,19 +38,31 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findByPhone(String phone);
 
     /**
-     * Custom query to search users by multiple criteria
+     * Search users by multiple criteria, ordered by id
      */
-    @Query("SELECT u FROM User u WHERE " +
-            "(:name IS NULL OR LOWER(u.name) LIKE LOWER(CONCAT('%', :name, '%'))) AND " +
-            "(:email IS NULL OR LOWER(u.email) LIKE LOWER(CONCAT('%', :email, '%'))) AND " +
-            "(:phone IS NULL OR u.phone LIKE CONCAT('%', :phone, '%'))")
-    List<User> searchUsers(@Param("name") String name,
-                           @Param("email") String email,
-                           @Param("phone") String phone);
+    default List<User> searchUsers(String name, String email, String phone) {
+        return findAll(UserSpecifications.matching(name, email, phone), Sort.by("id"));
+    }
+
+    /**
+     * Keyset page of users matching the search criteria, ordered by id and
+     * starting after the given id. Used to stream large result sets in batches.
+     */
+    default List<User> searchUsersAfter(String name, String email, String phone, long afterId, int limit) {
+        return findBy(UserSpecifications.matching(name, email, phone).and(UserSpecifications.idAfter(afterId)),
+                query -> query.sortBy(Sort.by("id")).limit(limit).all());
+    }
+
+    /**
+     * Find users by id for an update, locking their rows until the transaction ends
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<User> findByIdInOrderByIdAsc(Collection<Long> ids);
 
     /**
      * Count users by name pattern
      */
-    @Query("SELECT COUNT(u) FROM User u WHERE LOWER(u.name) LIKE LOWER(CONCAT('%', :namePattern, '%'))")
-    long countByNamePattern(@Param("namePattern") String namePattern);
+    default long countByNamePattern(String namePattern) {
+        return count(UserSpecifications.nameContains(namePattern));
+    }
 }
\ No newline at end of file
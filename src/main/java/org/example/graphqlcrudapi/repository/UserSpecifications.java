@@ -0,0 +1,117 @@
+package org.example.graphqlcrudapi.repository;
+
+import org.example.graphqlcrudapi.entity.User;
+import jakarta.persistence.criteria.Path;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Search predicates for {@link User}, written so the database can use the
+ * search indexes: only criteria that are present become predicates (no
+ * {@code :param IS NULL OR ...} disjunctions), and the column side is exactly
+ * the indexed expression, {@code LOWER(column)}, with the search term lowered
+ * in Java rather than in SQL.
+ */
+public final class UserSpecifications {
+
+    private static final char ESCAPE = '\\';
+
+    private UserSpecifications() {
+    }
+
+    /**
+     * Users matching every given criterion; null criteria are ignored
+     */
+    public static Specification<User> matching(String name, String email, String phone) {
+        return Specification.allOf(
+                nameContains(name),
+                emailContains(email),
+                phoneContains(phone));
+    }
+
+    public static Specification<User> nameContains(String name) {
+        return lowerContains("name", name);
+    }
+
+    public static Specification<User> emailContains(String email) {
+        return lowerContains("email", email);
+    }
+
+    public static Specification<User> phoneContains(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.like(root.get("phone"), "%" + escapeLike(phone) + "%", ESCAPE);
+    }
+
+    /**
+     * Users with an id greater than the given one, for keyset paging by id
+     */
+    public static Specification<User> idAfter(long afterId) {
+        return (root, query, cb) -> cb.greaterThan(root.get("id"), afterId);
+    }
+
+    /**
+     * Exact match on an attribute
+     */
+    public static Specification<User> equal(String attribute, Object value) {
+        return (root, query, cb) -> cb.equal(root.get(attribute), value);
+    }
+
+    /**
+     * Attribute equal to one of the values; matches nothing for an empty collection
+     */
+    public static Specification<User> in(String attribute, Collection<?> values) {
+        return (root, query, cb) -> values.isEmpty() ? cb.disjunction() : root.get(attribute).in(values);
+    }
+
+    /**
+     * Case-insensitive prefix match on a string attribute
+     */
+    public static Specification<User> lowerPrefix(String attribute, String value) {
+        String pattern = escapeLike(value.toLowerCase(Locale.ROOT)) + "%";
+        return (root, query, cb) -> cb.like(cb.lower(root.get(attribute)), pattern, ESCAPE);
+    }
+
+    /**
+     * Case-insensitive substring match on a string attribute; null matches everything
+     */
+    public static Specification<User> lowerContains(String attribute, String value) {
+        if (value == null) {
+            return null;
+        }
+        String pattern = "%" + escapeLike(value.toLowerCase(Locale.ROOT)) + "%";
+        return (root, query, cb) -> cb.like(cb.lower(root.get(attribute)), pattern, ESCAPE);
+    }
+
+    /**
+     * Time attribute within {@code [from, to)}; either bound may be null
+     */
+    public static Specification<User> between(String attribute, LocalDateTime from, LocalDateTime to) {
+        return (root, query, cb) -> {
+            Path<LocalDateTime> path = root.get(attribute);
+            if (from != null && to != null) {
+                return cb.and(cb.greaterThanOrEqualTo(path, from), cb.lessThan(path, to));
+            }
+            return from != null ? cb.greaterThanOrEqualTo(path, from) : cb.lessThan(path, to);
+        };
+    }
+
+    /**
+     * Match LIKE wildcards in user input literally
+     */
+    static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 4);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                escaped.append(ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
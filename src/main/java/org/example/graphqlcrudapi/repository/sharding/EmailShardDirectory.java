@@ -0,0 +1,115 @@
+package org.example.graphqlcrudapi.repository.sharding;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+
+/**
+ * Global email to shard index, kept on shard 0.
+ * <p>
+ * Emails are unique across all shards, so checking or finding a user by email
+ * is a primary key lookup here followed by at most one shard query instead of a
+ * scatter. Entries are written in auto-commit mode: an email is reserved before
+ * the user row is inserted and released again if that transaction rolls back,
+ * or once the transaction that deleted or renamed the user commits.
+ * <p>
+ * A crash between the directory write and the shard transaction leaves an
+ * entry whose shard has no user with that email. Such an entry is reclaimed
+ * once it is older than {@code reservationTimeout}, which must be longer than
+ * any user transaction so that reservations still in flight are left alone:
+ * on demand when a reservation runs into it, and for all entries by
+ * {@link #reconcile()} at startup.
+ */
+public class EmailShardDirectory {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ShardRouter shardRouter;
+
+    private final long reservationTimeoutMillis;
+
+    public EmailShardDirectory(ShardRouter shardRouter, Duration reservationTimeout) {
+        this.jdbcTemplate = new JdbcTemplate(shardRouter.shardDataSource(0));
+        this.shardRouter = shardRouter;
+        this.reservationTimeoutMillis = reservationTimeout.toMillis();
+    }
+
+    /**
+     * Shard holding the user with the given email, if any
+     */
+    public OptionalInt lookup(String email) {
+        List<Integer> shards = jdbcTemplate.queryForList(
+                "SELECT shard FROM user_email_shard WHERE email = ?", Integer.class, email);
+        return shards.isEmpty() ? OptionalInt.empty() : OptionalInt.of(shards.get(0));
+    }
+
+    /**
+     * Claim an email for a shard. Returns false if it is already taken.
+     */
+    public boolean reserve(String email, int shard) {
+        if (insert(email, shard)) {
+            return true;
+        }
+        return reclaimIfStale(email) && insert(email, shard);
+    }
+
+    public void release(String email) {
+        jdbcTemplate.update("DELETE FROM user_email_shard WHERE email = ?", email);
+    }
+
+    /**
+     * Reclaim every stale entry. Returns how many were removed.
+     */
+    public int reconcile() {
+        int reclaimed = 0;
+        List<String> emails = jdbcTemplate.queryForList(
+                "SELECT email FROM user_email_shard WHERE reserved_at < ?", String.class, staleBefore());
+        for (String email : emails) {
+            if (reclaimIfStale(email)) {
+                reclaimed++;
+            }
+        }
+        return reclaimed;
+    }
+
+    private boolean insert(String email, int shard) {
+        try {
+            jdbcTemplate.update("INSERT INTO user_email_shard (email, shard, reserved_at) VALUES (?, ?, ?)",
+                    email, shard, System.currentTimeMillis());
+            return true;
+        } catch (DuplicateKeyException ex) {
+            return false;
+        }
+    }
+
+    private boolean reclaimIfStale(String email) {
+        List<Map<String, Object>> entries = jdbcTemplate.queryForList(
+                "SELECT shard, reserved_at FROM user_email_shard WHERE email = ?", email);
+        if (entries.isEmpty()) {
+            // Released in the meantime
+            return true;
+        }
+        int shard = ((Number) entries.get(0).get("shard")).intValue();
+        long reservedAt = ((Number) entries.get(0).get("reserved_at")).longValue();
+        if (reservedAt >= staleBefore() || userExists(shard, email)) {
+            return false;
+        }
+        // Only if nobody reserved it again since it was read
+        return jdbcTemplate.update("DELETE FROM user_email_shard WHERE email = ? AND shard = ? AND reserved_at = ?",
+                email, shard, reservedAt) > 0;
+    }
+
+    private boolean userExists(int shard, String email) {
+        Integer count = new JdbcTemplate(shardRouter.shardDataSource(shard))
+                .queryForObject("SELECT COUNT(*) FROM users WHERE email = ?", Integer.class, email);
+        return count != null && count > 0;
+    }
+
+    private long staleBefore() {
+        return System.currentTimeMillis() - reservationTimeoutMillis;
+    }
+}
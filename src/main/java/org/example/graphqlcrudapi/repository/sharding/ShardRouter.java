@@ -0,0 +1,226 @@
+package org.example.graphqlcrudapi.repository.sharding;
+
+import org.example.graphqlcrudapi.execution.ExecutionBudget;
+import org.example.graphqlcrudapi.monitoring.SqlStatementStats;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Decides which shard a user lives on and runs repository calls there.
+ * <p>
+ * Users are placed by id: shard {@code i} of {@code n} hands out the identity
+ * values {@code i + 1, i + 1 + n, i + 1 + 2n, ...}, so {@code (id - 1) mod n}
+ * names the owning shard without any lookup. The shard is chosen for the
+ * current transaction with {@link #pin(int)}, which must happen before its first
+ * statement; the routing data source only fetches a physical connection then.
+ * Queries that are not keyed by id are scattered to every shard in parallel,
+ * each in its own read-only transaction, and the results are merged.
+ * <p>
+ * Without sharding configured there is a single shard: pinning does nothing
+ * and scattering runs the query once, in the caller's transaction.
+ */
+public class ShardRouter implements DisposableBean {
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private final List<DataSource> shardDataSources;
+
+    private final ExecutorService executor;
+
+    private final AtomicInteger nextInsertShard = new AtomicInteger();
+
+    private final Supplier<PlatformTransactionManager> transactionManager;
+
+    public ShardRouter(List<DataSource> shardDataSources, int scatterThreads,
+                       Supplier<PlatformTransactionManager> transactionManager) {
+        this.shardDataSources = List.copyOf(shardDataSources);
+        this.transactionManager = transactionManager;
+        this.executor = shardDataSources.isEmpty() ? null : Executors.newFixedThreadPool(Math.max(1, scatterThreads), runnable -> {
+            Thread thread = new Thread(runnable, "shard-scatter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Router for an unsharded deployment
+     */
+    public static ShardRouter single() {
+        return new ShardRouter(List.of(), 0, null);
+    }
+
+    public boolean isSharded() {
+        return !shardDataSources.isEmpty();
+    }
+
+    public int shardCount() {
+        return Math.max(1, shardDataSources.size());
+    }
+
+    /**
+     * Shard owning the user with the given id
+     */
+    public int shardFor(long id) {
+        return (int) Math.floorMod(id - 1, (long) shardCount());
+    }
+
+    /**
+     * Shard that should receive the next new user (round robin)
+     */
+    public int nextShardForInsert() {
+        return Math.floorMod(nextInsertShard.getAndIncrement(), shardCount());
+    }
+
+    /**
+     * Raw data source of one shard, bypassing routing
+     */
+    public DataSource shardDataSource(int shard) {
+        return shardDataSources.get(shard);
+    }
+
+    /**
+     * Route the current transaction to the given shard. Must be called inside a
+     * transaction, before it issues its first statement; the binding is cleared
+     * when the transaction completes. Callers without a transaction use
+     * {@link #onShard(int, Supplier)}.
+     */
+    public void pin(int shard) {
+        if (!isSharded()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Nothing would clear the binding, leaving the pooled thread on this shard
+            throw new IllegalStateException("Cannot pin shard " + shard + " outside a transaction");
+        }
+        Integer current = CURRENT_SHARD.get();
+        if (current != null) {
+            if (current != shard) {
+                throw new IllegalStateException("Transaction is already bound to shard " + current + ", cannot use shard " + shard);
+            }
+            return;
+        }
+        CURRENT_SHARD.set(shard);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                CURRENT_SHARD.remove();
+            }
+        });
+    }
+
+    /**
+     * Run work with the given shard bound to the calling thread, for callers
+     * that manage their own transactions
+     */
+    public <T> T onShard(int shard, Supplier<T> work) {
+        if (!isSharded()) {
+            return work.get();
+        }
+        Integer previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_SHARD.remove();
+            } else {
+                CURRENT_SHARD.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Run a read-only query on every shard in parallel and return the results
+     * in shard order. The caller's {@link ExecutionBudget} and SQL statistics
+     * carry over to the shard queries, so cancelling the operation cancels them
+     * all and their statements are counted for it.
+     */
+    public <T> List<T> scatter(Supplier<T> query) {
+        if (!isSharded()) {
+            return List.of(query.get());
+        }
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager.get());
+        readOnlyTransaction.setReadOnly(true);
+        ExecutionBudget budget = ExecutionBudget.current();
+        List<CompletableFuture<T>> futures = new ArrayList<>(shardCount());
+        for (int shard = 0; shard < shardCount(); shard++) {
+            int target = shard;
+            Supplier<T> shardQuery = SqlStatementStats.propagate(
+                    () -> onShard(target, () -> readOnlyTransaction.execute(status -> query.get())));
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                if (budget == null) {
+                    return shardQuery.get();
+                }
+                ExecutionBudget previous = budget.bind();
+                try {
+                    // Queued behind other scatters for longer than the operation had left
+                    budget.check();
+                    return shardQuery.get();
+                } finally {
+                    ExecutionBudget.restore(previous);
+                }
+            }, executor));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    /**
+     * Merge per-shard results that are each sorted by {@code order} into one
+     * sorted list of at most {@code limit} elements
+     */
+    public static <T> List<T> merge(List<List<T>> parts, Comparator<? super T> order, int limit) {
+        if (parts.size() == 1) {
+            List<T> only = parts.get(0);
+            return only.size() <= limit ? only : only.subList(0, limit);
+        }
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>((a, b) -> order.compare(a.value, b.value));
+        for (List<T> part : parts) {
+            Iterator<T> iterator = part.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head<>(iterator.next(), iterator));
+            }
+        }
+        List<T> merged = new ArrayList<>();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            Head<T> head = heads.poll();
+            merged.add(head.value);
+            if (head.rest.hasNext()) {
+                heads.add(new Head<>(head.rest.next(), head.rest));
+            }
+        }
+        return merged;
+    }
+
+    static Integer currentShard() {
+        return CURRENT_SHARD.get();
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private record Head<T>(T value, Iterator<T> rest) {
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.graphqlcrudapi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks that serialize writes claiming the same email within this
+ * process.
+ * <p>
+ * Without them two concurrent signups with one email both pass the existence
+ * check and the loser fails late on the unique constraint. A lock is picked by
+ * the hash of the normalized email and held until the surrounding transaction
+ * completes, so the second signup waits for the first to commit and then finds
+ * the email taken. Emails sharing a stripe wait on each other needlessly, which
+ * is what the stripe count trades against memory. Other instances are still
+ * only kept out by the constraint, which {@link UserService} translates.
+ */
+@Component
+public class EmailLocks {
+
+    private final ReentrantLock[] stripes;
+
+    private final int mask;
+
+    public EmailLocks(@Value("${app.users.email-lock-stripes:1024}") int stripes) {
+        // Rounded up to a power of two
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Lock the email's stripe until the current transaction commits or rolls back
+     */
+    public void lockUntilCompletion(String email) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Email locks must be taken inside a transaction");
+        }
+        ReentrantLock lock = stripeFor(email);
+        lock.lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    ReentrantLock stripeFor(String email) {
+        int hash = normalize(email).hashCode();
+        // Spread the high bits, as HashMap does
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    /**
+     * Emails differing only in case or surrounding whitespace share a lock
+     */
+    static String normalize(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,164 @@
+package org.example.graphqlcrudapi.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claim on a feature that keeps its state in one instance's memory or local
+ * disk, such as the user change log or the in-memory read model, and would go
+ * wrong with several instances sharing a database.
+ * <p>
+ * The claim is a row of the {@code instance_lease} table holding the owner and
+ * an expiry, renewed every third of the ttl. {@link #acquire} waits up to one
+ * ttl for a claim left by a stopped or crashed instance to expire, then fails,
+ * so a second instance refuses to start instead of running the feature
+ * alongside the first. An instance that still finds its claim taken on renewal,
+ * for example after a pause longer than the ttl, gives it up for good: its state
+ * has missed changes. {@link #isHeld()} turns false and the {@code onLost}
+ * callback runs. Expiries use the instances' clocks.
+ */
+public class InstanceLease implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(InstanceLease.class);
+
+    private final String name;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final long ttlMillis;
+
+    private final Runnable onLost;
+
+    private final ScheduledExecutorService renewer;
+
+    private volatile boolean held;
+
+    private InstanceLease(String name, JdbcTemplate jdbcTemplate, Duration ttl, Runnable onLost) {
+        this.name = name;
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlMillis = ttl.toMillis();
+        this.onLost = onLost;
+        this.renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "instance-lease-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Claim the named feature for this instance and keep renewing the claim
+     *
+     * @throws IllegalStateException if another instance still holds it after one ttl
+     */
+    public static InstanceLease acquire(String name, JdbcTemplate jdbcTemplate, Duration ttl, Runnable onLost) {
+        InstanceLease lease = new InstanceLease(name, jdbcTemplate, ttl, onLost);
+        long deadline = System.currentTimeMillis() + lease.ttlMillis;
+        while (!lease.claim()) {
+            if (System.currentTimeMillis() > deadline) {
+                lease.renewer.shutdown();
+                throw new IllegalStateException("Another instance holds '" + name + "' until "
+                        + Instant.ofEpochMilli(lease.expiry())
+                        + "; it keeps its state on one instance, so only one may run it against this database");
+            }
+            log.info("Waiting for the '{}' lease of another instance to expire", name);
+            sleep(Math.min(1000, Math.max(1, lease.ttlMillis / 10)));
+        }
+        lease.held = true;
+        long renewMillis = Math.max(1, lease.ttlMillis / 3);
+        lease.renewer.scheduleWithFixedDelay(lease::renew, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+        return lease;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Whether this instance still owns the feature
+     */
+    public boolean isHeld() {
+        return held;
+    }
+
+    // Only a row still naming this instance is extended; a taken or removed one stays lost
+    private void renew() {
+        boolean renewed;
+        try {
+            renewed = jdbcTemplate.update("UPDATE instance_lease SET expires_at = ? WHERE name = ? AND holder = ?",
+                    System.currentTimeMillis() + ttlMillis, name, owner) > 0;
+        } catch (RuntimeException ex) {
+            // The claim stays valid until it expires; the next renewal tries again
+            log.warn("Failed to renew the '{}' lease, will retry", name, ex);
+            return;
+        }
+        if (!renewed && held) {
+            held = false;
+            renewer.shutdown();
+            log.error("Lost the '{}' lease to another instance; this instance stops running it", name);
+            onLost.run();
+        }
+    }
+
+    // Take the row if it is ours or expired; a missing row is inserted, and of racing inserts one wins
+    private boolean claim() {
+        long now = System.currentTimeMillis();
+        int updated = jdbcTemplate.update(
+                "UPDATE instance_lease SET holder = ?, expires_at = ? WHERE name = ? AND (holder = ? OR expires_at < ?)",
+                owner, now + ttlMillis, name, owner, now);
+        if (updated > 0) {
+            return true;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO instance_lease (name, holder, expires_at) VALUES (?, ?, ?)",
+                    name, owner, now + ttlMillis);
+            return true;
+        } catch (DuplicateKeyException ex) {
+            return false;
+        }
+    }
+
+    private long expiry() {
+        Long expiresAt = jdbcTemplate.queryForObject(
+                "SELECT MAX(expires_at) FROM instance_lease WHERE name = ?", Long.class, name);
+        return expiresAt != null ? expiresAt : 0;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a lease", ex);
+        }
+    }
+
+    /**
+     * Stop renewing and release the claim, so a replacement instance can start
+     * right away
+     */
+    @Override
+    public void close() throws InterruptedException {
+        boolean release = held;
+        held = false;
+        renewer.shutdown();
+        renewer.awaitTermination(5, TimeUnit.SECONDS);
+        if (release) {
+            try {
+                jdbcTemplate.update("DELETE FROM instance_lease WHERE name = ? AND holder = ?", name, owner);
+            } catch (RuntimeException ex) {
+                log.warn("Failed to release the '{}' lease; it expires on its own", name, ex);
+            }
+        }
+    }
+}
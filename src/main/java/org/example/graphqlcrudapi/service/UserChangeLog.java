@@ -0,0 +1,327 @@
+package org.example.graphqlcrudapi.service;
+
+import org.example.graphqlcrudapi.dto.UserChange;
+import org.example.graphqlcrudapi.dto.UserChangePage;
+import org.example.graphqlcrudapi.entity.UserChangeOp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Segmented, memory-mapped, append-only log of user changes.
+ * <p>
+ * Every change is a fixed-size binary record, so a record's position follows
+ * directly from its sequence number and reading from a cursor is a seek. Each
+ * segment file is named after the sequence number of its first record and
+ * holds {@code segmentSize / RECORD_SIZE} records. When the active segment is
+ * full a new one is started and segments beyond the retention limit are deleted,
+ * oldest first. On startup every record's checksum is verified. In the last
+ * segment the log ends before the first invalid record, which discards a record
+ * torn by a crash; an invalid record in an earlier, already forced segment means
+ * the log is corrupt and opening it fails.
+ * <p>
+ * A log is bound to the database whose changes it records with
+ * {@link #bindTo(String)}, so a log left behind by another or a recreated
+ * database is not served as this one's history.
+ * <p>
+ * Appends are serialized; reads are lock-free and only ever see records that
+ * were completely written.
+ */
+public class UserChangeLog implements Closeable {
+
+    /**
+     * seq(8) userId(8) version(8) timestamp(8) op(1) reserved(3) changedFields(4) crc(4) padding(4)
+     */
+    static final int RECORD_SIZE = 48;
+
+    private static final int CRC_OFFSET = 40;
+
+    private static final String SUFFIX = ".log";
+
+    private static final String DATABASE_ID_FILE = "database-id";
+
+    private static final UserChangeOp[] OPS = UserChangeOp.values();
+
+    private final Path directory;
+
+    private final int recordsPerSegment;
+
+    private final int retainedSegments;
+
+    private final boolean forceOnAppend;
+
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private volatile long nextSequence;
+
+    public UserChangeLog(Path directory, long segmentSize, int retainedSegments, boolean forceOnAppend) {
+        if (segmentSize < RECORD_SIZE) {
+            throw new IllegalArgumentException("Segment size must hold at least one record: " + segmentSize);
+        }
+        this.directory = directory;
+        this.recordsPerSegment = (int) Math.min(Integer.MAX_VALUE / RECORD_SIZE, segmentSize / RECORD_SIZE);
+        this.retainedSegments = Math.max(1, retainedSegments);
+        this.forceOnAppend = forceOnAppend;
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open user change log in " + directory, ex);
+        }
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(SUFFIX)).toList()) {
+                String name = file.getFileName().toString();
+                long baseSequence = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                segments.put(baseSequence, Segment.open(file, baseSequence, recordsPerSegment));
+            }
+        }
+        if (segments.isEmpty()) {
+            nextSequence = 1;
+            segments.put(1L, Segment.open(segmentPath(1), 1, recordsPerSegment));
+            return;
+        }
+        Segment last = segments.lastEntry().getValue();
+        for (Segment segment : segments.headMap(last.baseSequence).values()) {
+            int invalid = segment.firstInvalid();
+            if (invalid < segment.capacity) {
+                throw new IllegalStateException("Change log segment " + segment.file + " is corrupt at sequence "
+                        + (segment.baseSequence + invalid) + "; move the directory away to start a new log");
+            }
+        }
+        nextSequence = last.baseSequence + last.firstInvalid();
+    }
+
+    /**
+     * Tie the log to the database identified by {@code databaseId}. A log that
+     * was written for a different database, or predates binding, is emptied;
+     * sequence numbers continue after its last change, so readers holding an
+     * older cursor see a truncated page. Returns whether the log was emptied.
+     * Meant to be called once, before the log is read or appended to.
+     */
+    public synchronized boolean bindTo(String databaseId) {
+        Path idFile = directory.resolve(DATABASE_ID_FILE);
+        try {
+            if (Files.exists(idFile) && Files.readString(idFile, StandardCharsets.UTF_8).equals(databaseId)) {
+                return false;
+            }
+            boolean empty = nextSequence == firstSequence();
+            for (Segment segment : segments.values()) {
+                segment.delete();
+            }
+            segments.clear();
+            segments.put(nextSequence, Segment.open(segmentPath(nextSequence), nextSequence, recordsPerSegment));
+            Files.writeString(idFile, databaseId, StandardCharsets.UTF_8);
+            return !empty;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to bind user change log in " + directory, ex);
+        }
+    }
+
+    /**
+     * Append changes in order. Their sequence numbers are assigned by the log;
+     * the sequence of the last appended change is returned.
+     */
+    public synchronized long append(List<UserChange> changes) {
+        long sequence = nextSequence;
+        for (UserChange change : changes) {
+            Segment segment = segments.lastEntry().getValue();
+            if (sequence - segment.baseSequence >= segment.capacity) {
+                segment = roll(segment, sequence);
+            }
+            segment.write((int) (sequence - segment.baseSequence), sequence, change);
+            sequence++;
+        }
+        if (forceOnAppend) {
+            segments.lastEntry().getValue().force();
+        }
+        nextSequence = sequence;
+        return sequence - 1;
+    }
+
+    private Segment roll(Segment full, long baseSequence) {
+        full.force();
+        Segment next = Segment.open(segmentPath(baseSequence), baseSequence, recordsPerSegment);
+        segments.put(baseSequence, next);
+        while (segments.size() > retainedSegments) {
+            segments.pollFirstEntry().getValue().delete();
+        }
+        return next;
+    }
+
+    /**
+     * Read up to {@code limit} changes with a sequence number greater than {@code since}
+     */
+    public UserChangePage read(long since, int limit) {
+        List<UserChange> changes = new ArrayList<>(Math.min(limit, 1024));
+        long from = Math.max(since + 1, firstSequence());
+        long cursor = replay(from - 1, limit, changes::add);
+        return new UserChangePage(changes, Math.max(cursor, since), from > since + 1);
+    }
+
+    /**
+     * Feed every change after {@code since}, up to the current end of the log,
+     * to the consumer. Returns the sequence number of the last change delivered.
+     */
+    public long replay(long since, Consumer<UserChange> consumer) {
+        return replay(since, Long.MAX_VALUE, consumer);
+    }
+
+    private long replay(long since, long limit, Consumer<UserChange> consumer) {
+        long end = nextSequence;
+        long sequence = Math.max(since + 1, firstSequence());
+        long delivered = 0;
+        while (sequence < end && delivered < limit) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(sequence);
+            if (entry == null) {
+                break;
+            }
+            Segment segment = entry.getValue();
+            consumer.accept(segment.read((int) (sequence - segment.baseSequence)));
+            sequence++;
+            delivered++;
+        }
+        return sequence - 1;
+    }
+
+    /**
+     * Sequence number of the oldest change still retained
+     */
+    public long firstSequence() {
+        return segments.firstKey();
+    }
+
+    /**
+     * Sequence number of the newest change, or {@code firstSequence() - 1} if empty
+     */
+    public long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * Force the active segment to disk
+     */
+    public void force() {
+        segments.lastEntry().getValue().force();
+    }
+
+    @Override
+    public synchronized void close() {
+        force();
+        segments.values().forEach(Segment::close);
+    }
+
+    private Path segmentPath(long baseSequence) {
+        return directory.resolve(String.format("%020d%s", baseSequence, SUFFIX));
+    }
+
+    private static final class Segment {
+
+        private final Path file;
+        private final long baseSequence;
+        private final int capacity;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Segment(Path file, long baseSequence, int capacity, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.baseSequence = baseSequence;
+            this.capacity = capacity;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path file, long baseSequence, int capacity) {
+            try {
+                FileChannel channel = FileChannel.open(file,
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+                return new Segment(file, baseSequence, capacity, channel, buffer);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to open change log segment " + file, ex);
+            }
+        }
+
+        void write(int slot, long sequence, UserChange change) {
+            int offset = slot * RECORD_SIZE;
+            buffer.putLong(offset, sequence);
+            buffer.putLong(offset + 8, change.getUserId());
+            buffer.putLong(offset + 16, change.getVersion());
+            buffer.putLong(offset + 24, change.getTimestamp());
+            buffer.put(offset + 32, (byte) change.getOp().ordinal());
+            buffer.putInt(offset + 36, change.getChangedFieldMask());
+            buffer.putInt(offset + CRC_OFFSET, checksum(offset));
+        }
+
+        UserChange read(int slot) {
+            int offset = slot * RECORD_SIZE;
+            return new UserChange(
+                    buffer.getLong(offset),
+                    OPS[buffer.get(offset + 32)],
+                    buffer.getLong(offset + 8),
+                    buffer.getLong(offset + 16),
+                    buffer.getInt(offset + 36),
+                    buffer.getLong(offset + 24));
+        }
+
+        /**
+         * Slot of the first record that wasn't completely written, or {@code capacity}
+         */
+        int firstInvalid() {
+            int slot = 0;
+            while (slot < capacity && isValid(slot)) {
+                slot++;
+            }
+            return slot;
+        }
+
+        boolean isValid(int slot) {
+            int offset = slot * RECORD_SIZE;
+            return buffer.getLong(offset) == baseSequence + slot
+                    && buffer.getInt(offset + CRC_OFFSET) == checksum(offset);
+        }
+
+        private int checksum(int offset) {
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(offset, CRC_OFFSET));
+            return (int) crc.getValue();
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to close change log segment " + file, ex);
+            }
+        }
+
+        void delete() {
+            close();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to delete change log segment " + file, ex);
+            }
+        }
+    }
+}
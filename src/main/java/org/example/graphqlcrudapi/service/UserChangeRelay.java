@@ -0,0 +1,146 @@
+package org.example.graphqlcrudapi.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.graphqlcrudapi.config.ChangeLogProperties;
+import org.example.graphqlcrudapi.dto.UserChange;
+import org.example.graphqlcrudapi.entity.UserChangeOutbox;
+import org.example.graphqlcrudapi.repository.UserChangeOutboxRepository;
+import org.example.graphqlcrudapi.repository.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves committed changes from the outbox table to the {@link UserChangeLog}.
+ * <p>
+ * A drain is requested right after every committed mutation and also runs
+ * periodically, so changes left behind by a crash are picked up on the next
+ * run. A batch is appended to the log before its outbox rows are deleted, which
+ * means a crash in between can repeat a change, but never lose one; readers can
+ * de-duplicate on {@code (userId, version)}. All drains run on one thread; with
+ * sharding every shard's outbox is drained in turn. The outbox is shared by all
+ * instances but the log is local, so the relay only runs while this instance
+ * holds the change log's {@link InstanceLease}.
+ */
+@Component
+public class UserChangeRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(UserChangeRelay.class);
+
+    private final UserChangeOutboxRepository outboxRepository;
+
+    private final UserChangeLog changeLog;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ChangeLogProperties properties;
+
+    private final ShardRouter shardRouter;
+
+    private final InstanceLease lease;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-change-relay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+
+    @Autowired
+    public UserChangeRelay(UserChangeOutboxRepository outboxRepository,
+                           UserChangeLog changeLog,
+                           PlatformTransactionManager transactionManager,
+                           ChangeLogProperties properties,
+                           ShardRouter shardRouter,
+                           @Qualifier("userChangeLogLease") InstanceLease lease) {
+        this.outboxRepository = outboxRepository;
+        this.changeLog = changeLog;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.shardRouter = shardRouter;
+        this.lease = lease;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long relayMillis = properties.getRelayInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::drainSafely, 0, relayMillis, TimeUnit.MILLISECONDS);
+        if (properties.getFsync() == ChangeLogProperties.FsyncPolicy.INTERVAL) {
+            long fsyncMillis = properties.getFsyncInterval().toMillis();
+            executor.scheduleWithFixedDelay(changeLog::force, fsyncMillis, fsyncMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Ask for a drain as soon as possible. Cheap to call after every commit:
+     * requests made while one is already pending are coalesced.
+     */
+    public void requestDrain() {
+        if (drainRequested.compareAndSet(false, true)) {
+            executor.execute(this::drainSafely);
+        }
+    }
+
+    /**
+     * Move all pending outbox rows to the change log, in batches. Does nothing
+     * once the lease is lost; the rows are left to the instance that took it.
+     */
+    public void drain() {
+        drainRequested.set(false);
+        if (!lease.isHeld()) {
+            return;
+        }
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            shardRouter.onShard(shard, this::drainShard);
+        }
+    }
+
+    private Void drainShard() {
+        int batchSize = properties.getRelayBatchSize();
+        Integer moved;
+        do {
+            moved = transactionTemplate.execute(status -> {
+                List<UserChangeOutbox> rows = outboxRepository.findAllByOrderByIdAsc(PageRequest.of(0, batchSize));
+                if (!rows.isEmpty()) {
+                    changeLog.append(rows.stream().map(UserChangeRelay::toChange).toList());
+                    outboxRepository.deleteAllInBatch(rows);
+                }
+                return rows.size();
+            });
+        } while (moved != null && moved == batchSize);
+        return null;
+    }
+
+    private void drainSafely() {
+        try {
+            drain();
+        } catch (RuntimeException ex) {
+            log.warn("Failed to relay user changes to the change log, will retry", ex);
+        }
+    }
+
+    private static UserChange toChange(UserChangeOutbox row) {
+        return new UserChange(0, row.getOp(), row.getUserId(), row.getUserVersion(),
+                row.getChangedFields(), row.getChangedAt());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
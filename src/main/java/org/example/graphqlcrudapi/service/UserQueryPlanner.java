@@ -0,0 +1,252 @@
+package org.example.graphqlcrudapi.service;
+
+import org.example.graphqlcrudapi.dto.DateTimeRange;
+import org.example.graphqlcrudapi.dto.StringFilter;
+import org.example.graphqlcrudapi.dto.UserFilter;
+import org.example.graphqlcrudapi.dto.UserOrderBy;
+import org.example.graphqlcrudapi.entity.User;
+import org.example.graphqlcrudapi.exception.UnboundedQueryException;
+import org.example.graphqlcrudapi.repository.UserSpecifications;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Compiles a {@link UserFilter} and {@link UserOrderBy} into a query and
+ * decides whether it can run without scanning the whole users table.
+ * <p>
+ * A plan is bounded when at least one predicate can be answered selectively
+ * from an index: a non-empty id, email or phone {@code in} list or {@code eq}
+ * match, a {@code createdAt} range with both ends on {@code (created_at, id)},
+ * and on PostgreSQL a {@code prefix} or {@code contains} of at least
+ * {@value #MIN_TRIGRAM_LENGTH} characters on the trigram indexes on
+ * {@code LOWER(name)} and {@code LOWER(email)}; shorter patterns match most of
+ * those indexes. A plan is also bounded when the sort follows an index and
+ * every row read in that order matches, which holds with no filter, or with
+ * only a {@code createdAt} range when sorting by {@code createdAt}, so the
+ * database reads just one page of it. Anything else needs a full scan:
+ * depending on {@code app.users.query.unindexed} it is rejected, or run with
+ * the page size capped at {@code app.users.query.unindexed-limit}.
+ */
+@Component
+public class UserQueryPlanner {
+
+    /**
+     * Shortest pattern pg_trgm extracts a trigram from
+     */
+    static final int MIN_TRIGRAM_LENGTH = 3;
+
+    /**
+     * What to do with a query that needs a full table scan
+     */
+    public enum UnindexedPolicy {
+        CAP,
+        REJECT
+    }
+
+    /**
+     * How the database will find the rows of a plan
+     */
+    public enum Access {
+        /** An index narrows the rows to read */
+        INDEX_LOOKUP,
+        /** No filter, rows are read in index order up to the limit */
+        INDEX_SCAN,
+        /** Every row has to be read */
+        FULL_SCAN
+    }
+
+    /**
+     * A compiled query: what to match, in which order, and how many rows to
+     * fetch. {@code comparator} reproduces {@code sort} in memory for merging
+     * per-shard results.
+     */
+    public record Plan(Specification<User> specification, Sort sort, Comparator<User> comparator,
+                       int limit, Access access, boolean capped) {
+    }
+
+    private final boolean trigramIndexes;
+
+    private final int defaultLimit;
+
+    private final int maxLimit;
+
+    private final int unindexedLimit;
+
+    private final int maxInValues;
+
+    private final UnindexedPolicy unindexedPolicy;
+
+    @Autowired
+    public UserQueryPlanner(DataSource dataSource,
+                            @Value("${app.users.query.default-limit:100}") int defaultLimit,
+                            @Value("${app.users.query.max-limit:1000}") int maxLimit,
+                            @Value("${app.users.query.unindexed-limit:100}") int unindexedLimit,
+                            @Value("${app.users.query.max-in-values:1000}") int maxInValues,
+                            @Value("${app.users.query.unindexed:cap}") UnindexedPolicy unindexedPolicy) {
+        this(databaseOf(dataSource) == DatabaseDriver.POSTGRESQL,
+                defaultLimit, maxLimit, unindexedLimit, maxInValues, unindexedPolicy);
+    }
+
+    UserQueryPlanner(boolean trigramIndexes, int defaultLimit, int maxLimit, int unindexedLimit,
+                     int maxInValues, UnindexedPolicy unindexedPolicy) {
+        this.trigramIndexes = trigramIndexes;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+        this.unindexedLimit = unindexedLimit;
+        this.maxInValues = maxInValues;
+        this.unindexedPolicy = unindexedPolicy;
+    }
+
+    private static DatabaseDriver databaseOf(DataSource dataSource) {
+        try {
+            return DatabaseDriver.fromJdbcUrl(JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getURL));
+        } catch (MetaDataAccessException ex) {
+            return DatabaseDriver.UNKNOWN;
+        }
+    }
+
+    /**
+     * Compile a query for up to {@code first} users
+     */
+    public Plan plan(UserFilter filter, UserOrderBy orderBy, Integer first) {
+        int requested = first != null ? first : defaultLimit;
+        if (requested < 1) {
+            throw new IllegalArgumentException("first must be positive: " + requested);
+        }
+        UserOrderBy order = orderBy != null ? orderBy : new UserOrderBy();
+        UserOrderBy.Field field = order.getField() != null ? order.getField() : UserOrderBy.Field.ID;
+        Sort.Direction direction = order.getDirection() == UserOrderBy.Direction.DESC ? Sort.Direction.DESC : Sort.Direction.ASC;
+
+        List<Specification<User>> predicates = new ArrayList<>();
+        boolean indexed = filter != null && addPredicates(filter, predicates);
+
+        Access access;
+        int limit;
+        if (indexed) {
+            access = Access.INDEX_LOOKUP;
+            limit = Math.min(requested, maxLimit);
+        } else if (isIndexOrdered(field) && (predicates.isEmpty() || isOnlyCreatedAtRange(filter, predicates, field))) {
+            access = Access.INDEX_SCAN;
+            limit = Math.min(requested, maxLimit);
+        } else if (unindexedPolicy == UnindexedPolicy.REJECT) {
+            throw new UnboundedQueryException("This filter and sort would scan all users. Filter by ids, email (eq/in), "
+                    + "phone (eq/in) or a createdAt range with from and to"
+                    + (trigramIndexes ? ", name or email (prefix/contains of at least " + MIN_TRIGRAM_LENGTH + " characters)" : "")
+                    + ", or sort by createdAt when filtering by createdAt only.");
+        } else {
+            access = Access.FULL_SCAN;
+            limit = Math.min(requested, Math.min(unindexedLimit, maxLimit));
+        }
+
+        Sort sort = field == UserOrderBy.Field.ID
+                ? Sort.by(direction, "id")
+                : Sort.by(direction, field.getProperty()).and(Sort.by(direction, "id"));
+        return new Plan(Specification.allOf(predicates), sort, comparator(field, direction),
+                limit, access, limit < Math.min(requested, maxLimit));
+    }
+
+    /**
+     * Add a predicate per condition; returns whether any of them narrows the
+     * rows through an index
+     */
+    private boolean addPredicates(UserFilter filter, List<Specification<User>> predicates) {
+        boolean indexed = false;
+        if (filter.getIds() != null) {
+            predicates.add(UserSpecifications.in("id", checkSize(filter.getIds())));
+            indexed = !filter.getIds().isEmpty();
+        }
+        indexed |= addStringPredicates("name", filter.getName(), false, trigramIndexes, predicates);
+        indexed |= addStringPredicates("email", filter.getEmail(), true, trigramIndexes, predicates);
+        indexed |= addStringPredicates("phone", filter.getPhone(), true, false, predicates);
+        if (hasBound(filter.getCreatedAt())) {
+            predicates.add(UserSpecifications.between("createdAt", filter.getCreatedAt().getFrom(), filter.getCreatedAt().getTo()));
+            indexed |= filter.getCreatedAt().getFrom() != null && filter.getCreatedAt().getTo() != null;
+        }
+        if (hasBound(filter.getUpdatedAt())) {
+            predicates.add(UserSpecifications.between("updatedAt", filter.getUpdatedAt().getFrom(), filter.getUpdatedAt().getTo()));
+        }
+        return indexed;
+    }
+
+    private boolean addStringPredicates(String attribute, StringFilter filter, boolean exactIndexed, boolean patternIndexed,
+                                        List<Specification<User>> predicates) {
+        if (filter == null) {
+            return false;
+        }
+        boolean indexed = false;
+        if (filter.getEq() != null) {
+            predicates.add(UserSpecifications.equal(attribute, filter.getEq()));
+            indexed = exactIndexed;
+        }
+        if (filter.getIn() != null) {
+            predicates.add(UserSpecifications.in(attribute, checkSize(filter.getIn())));
+            indexed |= exactIndexed && !filter.getIn().isEmpty();
+        }
+        if (filter.getPrefix() != null) {
+            predicates.add(UserSpecifications.lowerPrefix(attribute, filter.getPrefix()));
+            indexed |= patternIndexed && filter.getPrefix().length() >= MIN_TRIGRAM_LENGTH;
+        }
+        if (filter.getContains() != null) {
+            predicates.add(UserSpecifications.lowerContains(attribute, filter.getContains()));
+            indexed |= patternIndexed && filter.getContains().length() >= MIN_TRIGRAM_LENGTH;
+        }
+        return indexed;
+    }
+
+    private <T> List<T> checkSize(List<T> values) {
+        if (values.size() > maxInValues) {
+            throw new IllegalArgumentException("At most " + maxInValues + " values are allowed in a list filter");
+        }
+        return values;
+    }
+
+    /**
+     * A {@code createdAt} range is the only condition and the rows are read in
+     * {@code (created_at, id)} order, so every row read from the index matches
+     */
+    private static boolean isOnlyCreatedAtRange(UserFilter filter, List<Specification<User>> predicates,
+                                                UserOrderBy.Field field) {
+        return field == UserOrderBy.Field.CREATED_AT && predicates.size() == 1 && hasBound(filter.getCreatedAt());
+    }
+
+    private static boolean hasBound(DateTimeRange range) {
+        return range != null && (range.getFrom() != null || range.getTo() != null);
+    }
+
+    /**
+     * Sorts that an index returns in order: the primary key, the unique email
+     * and {@code (created_at, id)}
+     */
+    private static boolean isIndexOrdered(UserOrderBy.Field field) {
+        return field == UserOrderBy.Field.ID || field == UserOrderBy.Field.EMAIL || field == UserOrderBy.Field.CREATED_AT;
+    }
+
+    private static Comparator<User> comparator(UserOrderBy.Field field, Sort.Direction direction) {
+        Comparator<User> byId = Comparator.comparing(User::getId);
+        Comparator<User> comparator = switch (field) {
+            case ID -> byId;
+            case NAME -> nullsFirst(User::getName).thenComparing(byId);
+            case EMAIL -> nullsFirst(User::getEmail).thenComparing(byId);
+            case CREATED_AT -> nullsFirst(User::getCreatedAt).thenComparing(byId);
+            case UPDATED_AT -> nullsFirst(User::getUpdatedAt).thenComparing(byId);
+        };
+        return direction == Sort.Direction.DESC ? comparator.reversed() : comparator;
+    }
+
+    private static <T extends Comparable<? super T>> Comparator<User> nullsFirst(Function<User, T> key) {
+        return Comparator.comparing(key, Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+}
@@ -0,0 +1,577 @@
+package org.example.graphqlcrudapi.service;
+
+import org.example.graphqlcrudapi.entity.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * All users held in memory in columnar form, for serving reads without JPA.
+ * <p>
+ * Rows are kept sorted by id in parallel primitive arrays: the id, version and
+ * epoch-millisecond {@code createdAt}/{@code updatedAt}, and for each string
+ * column an {@code int} code into a dictionary that stores every distinct value
+ * once as UTF-8 bytes. That is 48 bytes per user plus the distinct string bytes,
+ * against several hundred for a managed entity. With {@code offHeap} the
+ * dictionary bytes live in a direct buffer outside the Java heap. Dictionary
+ * values are reference counted by the rows using them; once none does, the value
+ * is dropped and its code and bytes are reused. Email lookups go through an
+ * index from email code to the id of the user holding it.
+ * <p>
+ * The model is filled by {@link #upsert} and {@link #remove}, both at startup and
+ * after every committed mutation. Callbacks of concurrent commits can arrive out
+ * of order, so a row only ever moves to a higher version, and a deleted user is
+ * kept as a tombstone so that a late update can't bring it back. Searches have
+ * the semantics of the repository queries: {@code name} and {@code email} match
+ * case-insensitive substrings, {@code phone} a plain substring. Reads and writes
+ * are serialized by a read-write lock; reads return new {@link User} objects.
+ */
+public class UserReadModel {
+
+    private static final long DELETED = -1;
+
+    private static final int NULL = -1;
+
+    private static final long NO_OWNER = Long.MIN_VALUE;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final StringDictionary strings;
+
+    // Guarded by lock
+    private long[] ids;
+    private long[] versions;
+    private long[] createdAt;
+    private long[] updatedAt;
+    private int[] names;
+    private int[] emails;
+    private int[] phones;
+    private int[] addresses;
+    // Id of the user holding the email, by email code
+    private long[] emailOwners;
+    private int rows;
+    private int live;
+
+    private volatile boolean ready;
+
+    private boolean retired;
+
+    public UserReadModel(int initialCapacity, boolean offHeap) {
+        int capacity = Math.max(16, initialCapacity);
+        this.strings = new StringDictionary(capacity, offHeap);
+        this.ids = new long[capacity];
+        this.versions = new long[capacity];
+        this.createdAt = new long[capacity];
+        this.updatedAt = new long[capacity];
+        this.names = new int[capacity];
+        this.emails = new int[capacity];
+        this.phones = new int[capacity];
+        this.addresses = new int[capacity];
+        this.emailOwners = new long[capacity];
+        Arrays.fill(emailOwners, NO_OWNER);
+    }
+
+    /**
+     * Whether the initial load has completed and the model is still kept
+     * current; otherwise reads must go to the database
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public synchronized void markReady() {
+        ready = !retired;
+    }
+
+    /**
+     * Stop serving reads for good, once the model may have missed changes
+     */
+    public synchronized void retire() {
+        retired = true;
+        ready = false;
+    }
+
+    /**
+     * Insert the user, or replace it if this is a newer version
+     */
+    public void upsert(User user) {
+        long version = user.getVersion() != null ? user.getVersion() : 0;
+        lock.writeLock().lock();
+        try {
+            int row = Arrays.binarySearch(ids, 0, rows, user.getId());
+            if (row >= 0) {
+                if (versions[row] == DELETED || versions[row] >= version) {
+                    return;
+                }
+            } else {
+                row = insertRow(-row - 1, user.getId());
+                live++;
+            }
+            versions[row] = version;
+            createdAt[row] = epochMillis(user.getCreatedAt());
+            updatedAt[row] = epochMillis(user.getUpdatedAt());
+            // New values are encoded before the old ones are released, so an unchanged value keeps its code
+            names[row] = replace(names[row], user.getName());
+            int email = replace(emails[row], user.getEmail());
+            if (email != emails[row]) {
+                disown(emails[row], user.getId());
+                own(email, user.getId());
+                emails[row] = email;
+            }
+            phones[row] = replace(phones[row], user.getPhone());
+            addresses[row] = replace(addresses[row], user.getAddress());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Mark the user as deleted
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            int row = Arrays.binarySearch(ids, 0, rows, id);
+            if (row < 0) {
+                row = insertRow(-row - 1, id);
+            } else if (versions[row] != DELETED) {
+                live--;
+            } else {
+                return;
+            }
+            versions[row] = DELETED;
+            disown(emails[row], id);
+            strings.release(names[row]);
+            strings.release(emails[row]);
+            strings.release(phones[row]);
+            strings.release(addresses[row]);
+            names[row] = NULL;
+            emails[row] = NULL;
+            phones[row] = NULL;
+            addresses[row] = NULL;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Optional<User> findById(long id) {
+        lock.readLock().lock();
+        try {
+            int row = Arrays.binarySearch(ids, 0, rows, id);
+            return row >= 0 && versions[row] != DELETED ? Optional.of(toUser(row)) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<User> findByEmail(String email) {
+        lock.readLock().lock();
+        try {
+            int code = strings.find(email);
+            if (code == NULL || code >= emailOwners.length || emailOwners[code] == NO_OWNER) {
+                return Optional.empty();
+            }
+            int row = Arrays.binarySearch(ids, 0, rows, emailOwners[code]);
+            return row >= 0 && versions[row] != DELETED && emails[row] == code ? Optional.of(toUser(row)) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * All users, ordered by id
+     */
+    public List<User> findAll() {
+        return search(null, null, null, Long.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Up to {@code limit} users with an id greater than {@code afterId} matching
+     * every given criterion, ordered by id; null criteria are ignored
+     */
+    public List<User> search(String name, String email, String phone, long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            // Each distinct value is tested once, rows then only check their codes
+            BitSet nameMatches = name != null ? strings.matching(containsIgnoreCase(name)) : null;
+            BitSet emailMatches = email != null ? strings.matching(containsIgnoreCase(email)) : null;
+            BitSet phoneMatches = phone != null ? strings.matching(value -> value.contains(phone)) : null;
+
+            int from = Arrays.binarySearch(ids, 0, rows, afterId);
+            from = from >= 0 ? from + 1 : -from - 1;
+            List<User> users = new ArrayList<>(Math.min(limit, Math.max(0, live)));
+            for (int row = from; row < rows && users.size() < limit; row++) {
+                if (versions[row] != DELETED
+                        && matches(nameMatches, names[row])
+                        && matches(emailMatches, emails[row])
+                        && matches(phoneMatches, phones[row])) {
+                    users.add(toUser(row));
+                }
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of users, not counting deleted ones
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes held by the columns and the dictionary, on and off heap
+     */
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) ids.length * (4 * Long.BYTES + 4 * Integer.BYTES) + (long) emailOwners.length * Long.BYTES
+                    + strings.memoryBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int replace(int code, String value) {
+        int replacement = strings.encode(value);
+        strings.release(code);
+        return replacement;
+    }
+
+    private void own(int email, long id) {
+        if (email == NULL) {
+            return;
+        }
+        if (email >= emailOwners.length) {
+            int length = emailOwners.length;
+            emailOwners = Arrays.copyOf(emailOwners, Math.max(email + 1, length * 2));
+            Arrays.fill(emailOwners, length, emailOwners.length, NO_OWNER);
+        }
+        emailOwners[email] = id;
+    }
+
+    // Only if the user still holds it; out-of-order callbacks may have handed it on already
+    private void disown(int email, long id) {
+        if (email != NULL && email < emailOwners.length && emailOwners[email] == id) {
+            emailOwners[email] = NO_OWNER;
+        }
+    }
+
+    private int insertRow(int row, long id) {
+        if (rows == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            createdAt = Arrays.copyOf(createdAt, capacity);
+            updatedAt = Arrays.copyOf(updatedAt, capacity);
+            names = Arrays.copyOf(names, capacity);
+            emails = Arrays.copyOf(emails, capacity);
+            phones = Arrays.copyOf(phones, capacity);
+            addresses = Arrays.copyOf(addresses, capacity);
+        }
+        // Ids mostly arrive in increasing order, so this is usually an append
+        int tail = rows - row;
+        if (tail > 0) {
+            System.arraycopy(ids, row, ids, row + 1, tail);
+            System.arraycopy(versions, row, versions, row + 1, tail);
+            System.arraycopy(createdAt, row, createdAt, row + 1, tail);
+            System.arraycopy(updatedAt, row, updatedAt, row + 1, tail);
+            System.arraycopy(names, row, names, row + 1, tail);
+            System.arraycopy(emails, row, emails, row + 1, tail);
+            System.arraycopy(phones, row, phones, row + 1, tail);
+            System.arraycopy(addresses, row, addresses, row + 1, tail);
+        }
+        ids[row] = id;
+        names[row] = NULL;
+        emails[row] = NULL;
+        phones[row] = NULL;
+        addresses[row] = NULL;
+        rows++;
+        return row;
+    }
+
+    private User toUser(int row) {
+        User user = new User(strings.decode(names[row]), strings.decode(emails[row]),
+                strings.decode(phones[row]), strings.decode(addresses[row]));
+        user.setId(ids[row]);
+        user.setVersion(versions[row]);
+        user.setCreatedAt(localDateTime(createdAt[row]));
+        user.setUpdatedAt(localDateTime(updatedAt[row]));
+        return user;
+    }
+
+    private static boolean matches(BitSet matching, int code) {
+        return matching == null || (code != NULL && matching.get(code));
+    }
+
+    private static Predicate<String> containsIgnoreCase(String term) {
+        String lowered = term.toLowerCase(Locale.ROOT);
+        return value -> value.toLowerCase(Locale.ROOT).contains(lowered);
+    }
+
+    // Timestamps are local date-times; UTC is only used as a fixed offset to make them numbers
+    private static long epochMillis(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.toEpochSecond(ZoneOffset.UTC) * 1000 + dateTime.getNano() / 1_000_000 : Long.MIN_VALUE;
+    }
+
+    private static LocalDateTime localDateTime(long epochMillis) {
+        if (epochMillis == Long.MIN_VALUE) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000),
+                (int) Math.floorMod(epochMillis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Distinct strings stored once each as UTF-8 in one growing buffer, found
+     * again through an open-addressing hash table of their codes. Every
+     * {@link #encode} takes a reference that {@link #release} gives back; a value
+     * without references leaves the table, its code is reused, and its bytes are
+     * reclaimed the next time the buffer would have to grow.
+     */
+    static final class StringDictionary {
+
+        private final boolean offHeap;
+
+        private ByteBuffer bytes;
+        private int[] offsets;
+        private int[] lengths;
+        private int[] hashes;
+        private int[] references;
+        // Codes handed out so far, including released ones
+        private int count;
+        private int live;
+
+        private int[] free;
+        private int freeCount;
+
+        // Bytes written so far and how many of them belong to released values
+        private int used;
+        private int garbage;
+
+        // Code + 1 per slot, 0 when empty
+        private int[] table;
+
+        StringDictionary(int initialCapacity, boolean offHeap) {
+            this.offHeap = offHeap;
+            this.bytes = allocate(initialCapacity * 16);
+            this.offsets = new int[initialCapacity];
+            this.lengths = new int[initialCapacity];
+            this.hashes = new int[initialCapacity];
+            this.references = new int[initialCapacity];
+            this.free = new int[16];
+            this.table = new int[Integer.highestOneBit(initialCapacity) << 2];
+        }
+
+        int encode(String value) {
+            if (value == null) {
+                return NULL;
+            }
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            int hash = Arrays.hashCode(encoded);
+            int slot = slotOf(encoded, hash);
+            if (table[slot] != 0) {
+                int code = table[slot] - 1;
+                references[code]++;
+                return code;
+            }
+            int code = add(encoded, hash);
+            table[slot] = code + 1;
+            if (live * 2 > table.length) {
+                rehash();
+            }
+            return code;
+        }
+
+        void release(int code) {
+            if (code == NULL || --references[code] > 0) {
+                return;
+            }
+            int mask = table.length - 1;
+            int slot = home(hashes[code], mask);
+            while (table[slot] != code + 1) {
+                slot = (slot + 1) & mask;
+            }
+            removeSlot(slot, mask);
+            garbage += lengths[code];
+            live--;
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = code;
+        }
+
+        int find(String value) {
+            if (value == null) {
+                return NULL;
+            }
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            int slot = slotOf(encoded, Arrays.hashCode(encoded));
+            return table[slot] - 1;
+        }
+
+        String decode(int code) {
+            if (code == NULL) {
+                return null;
+            }
+            byte[] value = new byte[lengths[code]];
+            bytes.get(offsets[code], value);
+            return new String(value, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Codes of the values the predicate accepts
+         */
+        BitSet matching(Predicate<String> predicate) {
+            BitSet matching = new BitSet(count);
+            for (int code = 0; code < count; code++) {
+                if (references[code] > 0 && predicate.test(decode(code))) {
+                    matching.set(code);
+                }
+            }
+            return matching;
+        }
+
+        /**
+         * Number of values with references
+         */
+        int size() {
+            return live;
+        }
+
+        long memoryBytes() {
+            return bytes.capacity() + (long) offsets.length * 4 * Integer.BYTES + (long) free.length * Integer.BYTES
+                    + (long) table.length * Integer.BYTES;
+        }
+
+        private int slotOf(byte[] encoded, int hash) {
+            int mask = table.length - 1;
+            int slot = home(hash, mask);
+            while (table[slot] != 0 && !equalsAt(table[slot] - 1, encoded, hash)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static int home(int hash, int mask) {
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        // Moves later entries of the probe run back, so that lookups never stop at the gap
+        private void removeSlot(int slot, int mask) {
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                if (table[next] == 0) {
+                    break;
+                }
+                int home = home(hashes[table[next] - 1], mask);
+                if (((next - home) & mask) >= ((next - slot) & mask)) {
+                    table[slot] = table[next];
+                    slot = next;
+                }
+            }
+            table[slot] = 0;
+        }
+
+        private boolean equalsAt(int code, byte[] encoded, int hash) {
+            if (hashes[code] != hash || lengths[code] != encoded.length) {
+                return false;
+            }
+            int offset = offsets[code];
+            for (int i = 0; i < encoded.length; i++) {
+                if (bytes.get(offset + i) != encoded[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int add(byte[] encoded, int hash) {
+            int code;
+            if (freeCount > 0) {
+                code = free[--freeCount];
+            } else {
+                if (count == offsets.length) {
+                    int capacity = count * 2;
+                    offsets = Arrays.copyOf(offsets, capacity);
+                    lengths = Arrays.copyOf(lengths, capacity);
+                    hashes = Arrays.copyOf(hashes, capacity);
+                    references = Arrays.copyOf(references, capacity);
+                }
+                code = count++;
+            }
+            if (used + encoded.length > bytes.capacity()) {
+                compact(encoded.length);
+            }
+            bytes.put(used, encoded);
+            offsets[code] = used;
+            lengths[code] = encoded.length;
+            hashes[code] = hash;
+            references[code] = 1;
+            used += encoded.length;
+            live++;
+            return code;
+        }
+
+        /**
+         * Copy the values still referenced into a new buffer, which is twice as
+         * large unless that would leave it more than half empty
+         */
+        private void compact(int needed) {
+            int capacity = bytes.capacity();
+            if ((used - garbage + needed) * 2 > capacity) {
+                capacity = Math.max(capacity * 2, used - garbage + needed);
+            }
+            ByteBuffer compacted = allocate(capacity);
+            int offset = 0;
+            for (int code = 0; code < count; code++) {
+                if (references[code] > 0) {
+                    compacted.put(offset, bytes, offsets[code], lengths[code]);
+                    offsets[code] = offset;
+                    offset += lengths[code];
+                }
+            }
+            bytes = compacted;
+            used = offset;
+            garbage = 0;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int code = 0; code < count; code++) {
+                if (references[code] == 0) {
+                    continue;
+                }
+                int slot = home(hashes[code], mask);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = code + 1;
+            }
+        }
+
+        private ByteBuffer allocate(int capacity) {
+            return offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+    }
+}
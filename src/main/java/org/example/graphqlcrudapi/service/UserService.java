@@ -1,75 +1,194 @@
 package org.example.graphqlcrudapi.service;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.example.graphqlcrudapi.dto.UserChange;
+import org.example.graphqlcrudapi.dto.UserFilter;
 import org.example.graphqlcrudapi.dto.UserInput;
+import org.example.graphqlcrudapi.dto.UserOrderBy;
+import org.example.graphqlcrudapi.dto.UserPage;
 import org.example.graphqlcrudapi.entity.User;
+import org.example.graphqlcrudapi.entity.UserChangeOp;
+import org.example.graphqlcrudapi.entity.UserChangeOutbox;
 import org.example.graphqlcrudapi.exception.UserNotFoundException;
 import org.example.graphqlcrudapi.exception.DuplicateEmailException;
+import org.example.graphqlcrudapi.repository.UserChangeOutboxRepository;
 import org.example.graphqlcrudapi.repository.UserRepository;
+import org.example.graphqlcrudapi.repository.sharding.EmailShardDirectory;
+import org.example.graphqlcrudapi.repository.sharding.ShardRouter;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Service
 @Transactional
 public class UserService {
 
+    private static final Comparator<User> BY_ID = Comparator.comparing(User::getId);
+
+    private static final String EMAIL_CONSTRAINT = "uk_users_email";
+
     private final UserRepository userRepository;
 
+    private final UserChangeOutboxRepository outboxRepository;
+
+    private final UserChangeRelay changeRelay;
+
+    private final ShardRouter shardRouter;
+
+    private final UserQueryPlanner queryPlanner;
+
+    private final EmailLocks emailLocks;
+
+    // Only present when sharding is enabled
+    private final EmailShardDirectory emailDirectory;
+
+    // Only present when write-behind is enabled
+    private final UserWriteBehind writeBehind;
+
+    // Only present when the read model is enabled
+    private final UserReadModel readModel;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final EntityManager entityManager;
+
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository,
+                       UserChangeOutboxRepository outboxRepository,
+                       UserChangeRelay changeRelay,
+                       ShardRouter shardRouter,
+                       UserQueryPlanner queryPlanner,
+                       EmailLocks emailLocks,
+                       ObjectProvider<EmailShardDirectory> emailDirectory,
+                       ObjectProvider<UserWriteBehind> writeBehind,
+                       ObjectProvider<UserReadModel> readModel,
+                       PlatformTransactionManager transactionManager,
+                       EntityManager entityManager) {
         this.userRepository = userRepository;
+        this.outboxRepository = outboxRepository;
+        this.changeRelay = changeRelay;
+        this.shardRouter = shardRouter;
+        this.queryPlanner = queryPlanner;
+        this.emailLocks = emailLocks;
+        this.emailDirectory = emailDirectory.getIfAvailable();
+        this.writeBehind = writeBehind.getIfAvailable();
+        this.readModel = readModel.getIfAvailable();
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.entityManager = entityManager;
     }
 
     /**
      * Get all users
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<User> getAllUsers() {
-        return userRepository.findAll();
+        return overlay(read(UserReadModel::findAll,
+                () -> ShardRouter.merge(shardRouter.scatter(() -> userRepository.findAll(Sort.by("id"))), BY_ID, Integer.MAX_VALUE)));
     }
 
     /**
      * Get user by ID
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public User getUserById(Long id) {
-        return userRepository.findById(id)
-                .orElseThrow(() -> new UserNotFoundException("User not found with id: " + id));
+        User user = read(model -> model.findById(id).orElseThrow(() -> notFound(id)), () -> findUser(id));
+        return writeBehind != null ? writeBehind.overlay(user) : user;
     }
 
     /**
      * Get user by email
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Optional<User> getUserByEmail(String email) {
-        return userRepository.findByEmail(email);
+        Optional<User> user = read(model -> model.findByEmail(email), () -> {
+            if (emailDirectory != null) {
+                OptionalInt shard = emailDirectory.lookup(email);
+                if (shard.isEmpty()) {
+                    return Optional.empty();
+                }
+                shardRouter.pin(shard.getAsInt());
+            }
+            return userRepository.findByEmail(email);
+        });
+        return writeBehind != null ? user.map(writeBehind::overlay) : user;
     }
 
     /**
      * Search users by name
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<User> searchUsersByName(String name) {
-        return userRepository.findByNameContainingIgnoreCase(name);
+        flushBuffered();
+        return read(model -> model.search(name, null, null, Long.MIN_VALUE, Integer.MAX_VALUE),
+                () -> ShardRouter.merge(shardRouter.scatter(() -> userRepository.searchUsersByName(name)), BY_ID, Integer.MAX_VALUE));
     }
 
     /**
      * Search users by multiple criteria
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<User> searchUsers(String name, String email, String phone) {
-        return userRepository.searchUsers(name, email, phone);
+        flushBuffered();
+        return read(model -> model.search(name, email, phone, Long.MIN_VALUE, Integer.MAX_VALUE),
+                () -> ShardRouter.merge(shardRouter.scatter(() -> userRepository.searchUsers(name, email, phone)), BY_ID, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Get the next batch of users matching the search criteria after the given id
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<User> searchUsersAfter(String name, String email, String phone, long afterId, int limit) {
+        flushBuffered();
+        return read(model -> model.search(name, email, phone, afterId, limit),
+                () -> ShardRouter.merge(shardRouter.scatter(
+                        () -> userRepository.searchUsersAfter(name, email, phone, afterId, limit)), BY_ID, limit));
+    }
+
+    /**
+     * Find users matching a filter, in the requested order, one page at a time
+     */
+    @Transactional(readOnly = true)
+    public UserPage findUsers(UserFilter filter, UserOrderBy orderBy, Integer first) {
+        UserQueryPlanner.Plan plan = queryPlanner.plan(filter, orderBy, first);
+        flushBuffered();
+        // One extra row tells whether there is more
+        int fetch = plan.limit() + 1;
+        List<User> users = ShardRouter.merge(shardRouter.scatter(() -> userRepository.findBy(plan.specification(),
+                query -> query.sortBy(plan.sort()).limit(fetch).all())), plan.comparator(), fetch);
+        boolean hasMore = users.size() > plan.limit();
+        return new UserPage(hasMore ? users.subList(0, plan.limit()) : users, hasMore, plan.capped());
     }
 
     /**
      * Create a new user
      */
     public User createUser(UserInput userInput) {
-        // Check if email already exists
-        if (userRepository.existsByEmail(userInput.getEmail())) {
+        int shard = shardRouter.nextShardForInsert();
+        shardRouter.pin(shard);
+
+        // Check if email already exists; concurrent creates with the same email wait here until this one completes
+        emailLocks.lockUntilCompletion(userInput.getEmail());
+        if (!claimEmail(userInput.getEmail(), shard)) {
             throw new DuplicateEmailException("Email already exists: " + userInput.getEmail());
         }
 
@@ -79,47 +198,79 @@ public class UserService {
         user.setPhone(userInput.getPhone());
         user.setAddress(userInput.getAddress());
 
-        return userRepository.save(user);
+        User saved = saveAndFlush(user);
+        recordChange(UserChangeOp.CREATE, saved.getId(), saved.getVersion(), changedFields(null, userInput));
+        updateReadModelAfterCommit(saved);
+        return saved;
     }
 
     /**
      * Update an existing user
      */
     public User updateUser(Long id, UserInput userInput) {
-        User existingUser = getUserById(id);
+        User existingUser = findUser(id);
 
         // Check if email is being changed and if new email already exists
-        if (!existingUser.getEmail().equals(userInput.getEmail()) &&
-                userRepository.existsByEmail(userInput.getEmail())) {
-            throw new DuplicateEmailException("Email already exists: " + userInput.getEmail());
+        String previousEmail = existingUser.getEmail();
+        if (writeBehind != null) {
+            if (previousEmail.equals(userInput.getEmail())) {
+                return writeBehind.update(existingUser, userInput);
+            }
+            // Written now, so nothing buffered earlier may be written after it. A flush may have
+            // written the user since it was read, and none may until this transaction completes.
+            writeBehind.supersede(id);
+            entityManager.refresh(existingUser, LockModeType.PESSIMISTIC_WRITE);
+        }
+        if (!previousEmail.equals(userInput.getEmail())) {
+            emailLocks.lockUntilCompletion(userInput.getEmail());
+            if (!claimEmail(userInput.getEmail(), shardRouter.shardFor(id))) {
+                throw new DuplicateEmailException("Email already exists: " + userInput.getEmail());
+            }
+            releaseEmailAfterCommit(previousEmail);
         }
 
+        int changedFields = changedFields(existingUser, userInput);
         existingUser.setName(userInput.getName());
         existingUser.setEmail(userInput.getEmail());
         existingUser.setPhone(userInput.getPhone());
         existingUser.setAddress(userInput.getAddress());
 
-        return userRepository.save(existingUser);
+        if (changedFields == 0) {
+            return existingUser;
+        }
+        User saved = saveAndFlush(existingUser);
+        recordChange(UserChangeOp.UPDATE, saved.getId(), saved.getVersion(), changedFields);
+        updateReadModelAfterCommit(saved);
+        return saved;
     }
 
     /**
      * Delete user by ID
      */
     public boolean deleteUser(Long id) {
-        if (!userRepository.existsById(id)) {
-            throw new UserNotFoundException("User not found with id: " + id);
-        }
+        User existingUser = findUser(id);
 
-        userRepository.deleteById(id);
+        userRepository.delete(existingUser);
+        releaseEmailAfterCommit(existingUser.getEmail());
+        recordChange(UserChangeOp.DELETE, id, existingUser.getVersion() + 1, 0);
+        if (readModel != null) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    readModel.remove(id);
+                }
+            });
+        }
         return true;
     }
 
     /**
      * Get user count
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public long getUserCount() {
-        return userRepository.count();
+        return read(model -> (long) model.size(),
+                () -> shardRouter.scatter(userRepository::count).stream().mapToLong(Long::longValue).sum());
     }
 
     /**
@@ -127,6 +278,7 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public boolean userExists(Long id) {
+        shardRouter.pin(shardRouter.shardFor(id));
         return userRepository.existsById(id);
     }
 
@@ -135,6 +287,153 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public boolean emailExists(String email) {
+        if (emailDirectory != null) {
+            return emailDirectory.lookup(email).isPresent();
+        }
         return userRepository.existsByEmail(email);
     }
+
+    /**
+     * Load a user from its shard, as committed
+     */
+    private User findUser(Long id) {
+        shardRouter.pin(shardRouter.shardFor(id));
+        return userRepository.findById(id).orElseThrow(() -> notFound(id));
+    }
+
+    private static UserNotFoundException notFound(Long id) {
+        return new UserNotFoundException("User not found with id: " + id);
+    }
+
+    /**
+     * Serve a read from the read model once it is loaded, without touching the
+     * database; otherwise run the query in a read-only transaction
+     */
+    private <T> T read(Function<UserReadModel, T> fromModel, Supplier<T> fromDatabase) {
+        if (readModel != null && readModel.isReady()) {
+            return fromModel.apply(readModel);
+        }
+        return readOnlyTransaction.execute(status -> fromDatabase.get());
+    }
+
+    /**
+     * Copy the user's committed state into the read model
+     */
+    private void updateReadModelAfterCommit(User user) {
+        if (readModel == null) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                readModel.upsert(user);
+            }
+        });
+    }
+
+    /**
+     * Apply updates still buffered by write-behind to users read from the database
+     */
+    private List<User> overlay(List<User> users) {
+        return writeBehind != null ? writeBehind.overlay(users) : users;
+    }
+
+    /**
+     * Write updates still buffered by write-behind before a read that filters or
+     * sorts on user fields, which can't be corrected afterwards by an overlay
+     */
+    private void flushBuffered() {
+        if (writeBehind != null) {
+            writeBehind.flushIfBuffered();
+        }
+    }
+
+    /**
+     * Make sure no other user has the email. With sharding the email is reserved
+     * in the directory right away and handed back if the transaction rolls back.
+     */
+    private boolean claimEmail(String email, int shard) {
+        if (emailDirectory == null) {
+            return !userRepository.existsByEmail(email);
+        }
+        if (!emailDirectory.reserve(email, shard)) {
+            return false;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    emailDirectory.release(email);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Write the user now, so that losing a race for its email to another
+     * instance fails here as a duplicate rather than later at commit
+     */
+    private User saveAndFlush(User user) {
+        try {
+            return userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException ex) {
+            if (ex.getCause() instanceof ConstraintViolationException violation
+                    && violation.getConstraintName() != null
+                    && violation.getConstraintName().toLowerCase(Locale.ROOT).contains(EMAIL_CONSTRAINT)) {
+                throw new DuplicateEmailException("Email already exists: " + user.getEmail());
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Free an email in the directory once the transaction that gave it up commits
+     */
+    private void releaseEmailAfterCommit(String email) {
+        if (emailDirectory == null) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                emailDirectory.release(email);
+            }
+        });
+    }
+
+    /**
+     * Write a change to the outbox in the current transaction and have it
+     * relayed to the change log once the transaction commits
+     */
+    private void recordChange(UserChangeOp op, Long userId, Long version, int changedFields) {
+        outboxRepository.save(new UserChangeOutbox(op, userId, version, changedFields, System.currentTimeMillis()));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                changeRelay.requestDrain();
+            }
+        });
+    }
+
+    /**
+     * Bit mask of the fields that differ between the user and the input;
+     * every non-null input field counts as changed for a new user
+     */
+    static int changedFields(User user, UserInput input) {
+        int changed = 0;
+        if (!Objects.equals(user != null ? user.getName() : null, input.getName())) {
+            changed |= UserChange.NAME;
+        }
+        if (!Objects.equals(user != null ? user.getEmail() : null, input.getEmail())) {
+            changed |= UserChange.EMAIL;
+        }
+        if (!Objects.equals(user != null ? user.getPhone() : null, input.getPhone())) {
+            changed |= UserChange.PHONE;
+        }
+        if (!Objects.equals(user != null ? user.getAddress() : null, input.getAddress())) {
+            changed |= UserChange.ADDRESS;
+        }
+        return changed;
+    }
 }
\ No newline at end of file
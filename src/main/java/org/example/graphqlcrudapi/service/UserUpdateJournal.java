@@ -0,0 +1,288 @@
+package org.example.graphqlcrudapi.service;
+
+import org.example.graphqlcrudapi.dto.UserInput;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Local write-ahead journal for updates buffered by {@link UserWriteBehind}.
+ * <p>
+ * Every buffered update is appended here and forced to disk before it is
+ * acknowledged, so an update the client saw succeed survives a crash even though
+ * it has not reached the database yet. Forcing is grouped: a caller waiting in
+ * {@link #sync} forces everything appended so far, and the callers queued behind
+ * it usually find their records already on disk.
+ * <p>
+ * The journal is split into generation files. Before each flush the active file
+ * is closed with {@link #roll()}; once the flush has committed, the files before
+ * the new generation hold nothing the database lacks and are deleted. On startup
+ * the files left by the previous run are read back with {@link #recover()}; a
+ * record torn by a crash fails its checksum and ends that file.
+ */
+public class UserUpdateJournal implements Closeable {
+
+    /**
+     * A buffered update or, with a {@code null} input, a marker that a direct
+     * write replaced everything buffered for the user before it
+     */
+    public record Entry(long userId, long acceptedAt, UserInput input) {
+    }
+
+    private static final String SUFFIX = ".journal";
+
+    private static final byte UPDATE = 1;
+
+    private static final byte SUPERSEDE = 2;
+
+    /**
+     * length(4) crc(4)
+     */
+    private static final int HEADER_SIZE = 8;
+
+    private final Path directory;
+
+    private final Object syncLock = new Object();
+
+    // Guarded by this
+    private FileChannel channel;
+    private long generation;
+    private long appended;
+
+    private volatile long durable;
+
+    public UserUpdateJournal(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            long last = 0;
+            for (Path file : files()) {
+                last = Math.max(last, generationOf(file));
+            }
+            generation = last + 1;
+            channel = open(generation);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open user update journal in " + directory, ex);
+        }
+    }
+
+    /**
+     * Entries left by a previous run, oldest first
+     */
+    public List<Entry> recover() {
+        List<Entry> entries = new ArrayList<>();
+        try {
+            for (Path file : files()) {
+                if (generationOf(file) < generation()) {
+                    readAll(Files.readAllBytes(file), entries);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read user update journal in " + directory, ex);
+        }
+        return entries;
+    }
+
+    /**
+     * Append an entry without forcing it. Returns the position to pass to
+     * {@link #sync} before acknowledging it.
+     */
+    public synchronized long append(Entry entry) {
+        ByteBuffer record = encode(entry);
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to append to user update journal", ex);
+        }
+        appended += record.limit();
+        return appended;
+    }
+
+    /**
+     * Wait until everything up to the given position is on disk
+     */
+    public void sync(long position) {
+        if (durable >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durable >= position) {
+                return;
+            }
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                target = appended;
+                current = channel;
+            }
+            force(current);
+            durable = target;
+        }
+    }
+
+    /**
+     * Force and close the active file and start the next generation, which is returned
+     */
+    public long roll() {
+        synchronized (syncLock) {
+            synchronized (this) {
+                force(channel);
+                closeChannel();
+                durable = appended;
+                generation++;
+                channel = open(generation);
+                return generation;
+            }
+        }
+    }
+
+    /**
+     * Delete the files of all generations before the given one
+     */
+    public void deleteBefore(long generation) {
+        try {
+            for (Path file : files()) {
+                if (generationOf(file) < generation) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to delete user update journal files in " + directory, ex);
+        }
+    }
+
+    /**
+     * Generation of the active file
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    @Override
+    public void close() {
+        synchronized (syncLock) {
+            synchronized (this) {
+                force(channel);
+                closeChannel();
+            }
+        }
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private FileChannel open(long generation) {
+        Path file = directory.resolve(String.format("%020d%s", generation, SUFFIX));
+        try {
+            return FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open user update journal file " + file, ex);
+        }
+    }
+
+    private void force(FileChannel channel) {
+        try {
+            channel.force(false);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to force user update journal to disk", ex);
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to close user update journal", ex);
+        }
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static ByteBuffer encode(Entry entry) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);
+            out.writeInt(0);
+            UserInput input = entry.input();
+            out.writeByte(input != null ? UPDATE : SUPERSEDE);
+            out.writeLong(entry.userId());
+            out.writeLong(entry.acceptedAt());
+            if (input != null) {
+                writeNullable(out, input.getName());
+                writeNullable(out, input.getEmail());
+                writeNullable(out, input.getPhone());
+                writeNullable(out, input.getAddress());
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        int length = record.limit() - HEADER_SIZE;
+        record.putInt(0, length);
+        record.putInt(4, checksum(record, length));
+        return record;
+    }
+
+    private static void readAll(byte[] file, List<Entry> entries) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(file);
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length <= 0 || length > buffer.remaining() - HEADER_SIZE
+                    || buffer.getInt(start + 4) != checksum(buffer.slice(start, HEADER_SIZE + length), length)) {
+                return;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(file, start + HEADER_SIZE, length));
+            byte op = in.readByte();
+            long userId = in.readLong();
+            long acceptedAt = in.readLong();
+            UserInput input = null;
+            if (op == UPDATE) {
+                input = new UserInput(readNullable(in), readNullable(in), readNullable(in), readNullable(in));
+            }
+            entries.add(new Entry(userId, acceptedAt, input));
+            buffer.position(start + HEADER_SIZE + length);
+        }
+    }
+
+    private static int checksum(ByteBuffer record, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(record.slice(HEADER_SIZE, length));
+        return (int) crc.getValue();
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
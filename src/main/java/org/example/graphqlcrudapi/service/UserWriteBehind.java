@@ -0,0 +1,608 @@
+package org.example.graphqlcrudapi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.graphqlcrudapi.dto.UserChange;
+import org.example.graphqlcrudapi.dto.UserInput;
+import org.example.graphqlcrudapi.entity.User;
+import org.example.graphqlcrudapi.entity.UserChangeOp;
+import org.example.graphqlcrudapi.entity.UserChangeOutbox;
+import org.example.graphqlcrudapi.repository.UserChangeOutboxRepository;
+import org.example.graphqlcrudapi.repository.UserRepository;
+import org.example.graphqlcrudapi.repository.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Buffers {@code updateUser} calls and writes them to the database in groups.
+ * <p>
+ * An accepted update is appended to the {@link UserUpdateJournal}, forced to
+ * disk and kept in memory, where later updates to the same user replace it. A
+ * single flusher thread takes everything buffered every {@code flushInterval},
+ * or sooner once {@code maxBatch} users are waiting, and writes it in one
+ * transaction per shard: the rows are locked, the buffered values applied, and
+ * one outbox change is recorded per user that really changed. Until its flush
+ * has committed, reads of single users on this node see a buffered update
+ * through {@link #overlay}; searches, which filter and sort in the database or
+ * the read model, call {@link #flushIfBuffered} first. Other nodes see an update
+ * once it is committed.
+ * <p>
+ * Only name, phone and address are buffered. An email change is written by
+ * {@link UserService} directly, because its uniqueness has to be checked, and
+ * calls {@link #supersede} first so that older buffered values can't overwrite
+ * it afterwards. The buffered update stays in the journal until that write
+ * commits, and only then is the drop journaled. If a flush fails, its batch is
+ * put back and retried by the next one; the journal keeps every file until a
+ * flush has covered it, and on startup whatever the previous run left there is
+ * written before requests are served.
+ */
+public class UserWriteBehind implements SmartInitializingSingleton, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(UserWriteBehind.class);
+
+    private final UserRepository userRepository;
+
+    private final UserChangeOutboxRepository outboxRepository;
+
+    private final UserChangeRelay changeRelay;
+
+    private final ShardRouter shardRouter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final UserUpdateJournal journal;
+
+    // Only present when the read model is enabled
+    private final UserReadModel readModel;
+
+    private final Duration flushInterval;
+
+    private final int maxBatch;
+
+    private final Timer flushTimer;
+
+    private final Timer lagTimer;
+
+    private final Timer syncTimer;
+
+    private final DistributionSummary batchSize;
+
+    private final Counter coalesced;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    // Held shared while buffering, exclusively while a flush takes the buffer
+    private final ReadWriteLock bufferLock = new ReentrantReadWriteLock();
+
+    private volatile ConcurrentHashMap<Long, Pending> pending = new ConcurrentHashMap<>();
+
+    // The batch of the last flush, kept until the next one so that reads racing its commit still see it
+    private volatile Map<Long, Pending> flushed = Map.of();
+
+    // Updates dropped by a direct write that has not completed yet; they stay buffered in the journal until it commits
+    private final ConcurrentHashMap<Long, Pending> superseding = new ConcurrentHashMap<>();
+
+    // Notified whenever a chunk transaction completes
+    private final Object chunkCompleted = new Object();
+
+    public UserWriteBehind(UserRepository userRepository,
+                           UserChangeOutboxRepository outboxRepository,
+                           UserChangeRelay changeRelay,
+                           ShardRouter shardRouter,
+                           PlatformTransactionManager transactionManager,
+                           UserUpdateJournal journal,
+                           UserReadModel readModel,
+                           Duration flushInterval,
+                           int maxBatch,
+                           MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.outboxRepository = outboxRepository;
+        this.changeRelay = changeRelay;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journal = journal;
+        this.readModel = readModel;
+        this.flushInterval = flushInterval;
+        this.maxBatch = Math.max(1, maxBatch);
+
+        MeterRegistry registry = meterRegistry != null ? meterRegistry : new SimpleMeterRegistry();
+        this.flushTimer = Timer.builder("users.write_behind.flush")
+                .description("Time to write one batch of buffered user updates")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.lagTimer = Timer.builder("users.write_behind.lag")
+                .description("Time from accepting a user update to committing it")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.syncTimer = Timer.builder("users.write_behind.journal.sync")
+                .description("Time an update waits for the journal to reach disk")
+                .register(registry);
+        this.batchSize = DistributionSummary.builder("users.write_behind.batch")
+                .description("Users written per flush")
+                .register(registry);
+        this.coalesced = Counter.builder("users.write_behind.coalesced")
+                .description("Updates replaced by a later update before being written")
+                .register(registry);
+        Gauge.builder("users.write_behind.pending", this, writeBehind -> writeBehind.pending.size())
+                .description("Users with buffered updates")
+                .register(registry);
+    }
+
+    /**
+     * Write whatever the previous run left in the journal, then start flushing
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<UserUpdateJournal.Entry> entries = journal.recover();
+        for (UserUpdateJournal.Entry entry : entries) {
+            if (entry.input() == null) {
+                pending.remove(entry.userId());
+            } else {
+                pending.merge(entry.userId(), new Pending(entry.input(), entry.acceptedAt()), Pending::replacedBy);
+            }
+        }
+        if (pending.isEmpty()) {
+            journal.deleteBefore(journal.generation());
+        } else {
+            log.info("Writing {} user updates recovered from the write-behind journal", pending.size());
+            flushPending();
+        }
+        long intervalMillis = flushInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::flushSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Buffer an update of a user that keeps its email and return the user as it
+     * will be once the update is written. Returns after the update is on disk.
+     */
+    public User update(User current, UserInput input) {
+        User view = overlay(current);
+        if ((UserService.changedFields(view, input) & ~UserChange.EMAIL) == 0) {
+            return view;
+        }
+        long acceptedAt = System.currentTimeMillis();
+        Pending update = new Pending(input, acceptedAt);
+        long[] position = new long[1];
+        bufferLock.readLock().lock();
+        try {
+            // Appended while holding the user's entry, so that the journal has the user's updates in buffer order
+            pending.compute(current.getId(), (userId, older) -> {
+                position[0] = journal.append(new UserUpdateJournal.Entry(userId, acceptedAt, input));
+                return older != null ? coalesce(older, update) : update;
+            });
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+        long syncStart = System.nanoTime();
+        journal.sync(position[0]);
+        syncTimer.record(System.nanoTime() - syncStart, TimeUnit.NANOSECONDS);
+
+        if (pending.size() >= maxBatch) {
+            requestFlush();
+        }
+        return view(current, input, acceptedAt);
+    }
+
+    /**
+     * Drop everything buffered for a user that the current transaction is about
+     * to overwrite. Must be called inside that transaction, before it writes the
+     * user; if a flush is writing the user at that moment, this waits for it to
+     * complete, so the user has to be read again afterwards. The drop is journaled
+     * once the transaction commits; if it rolls back, the buffered update is put back.
+     */
+    public void supersede(long userId) {
+        Pending dropped;
+        long position = 0;
+        while (true) {
+            Pending inFlight;
+            bufferLock.readLock().lock();
+            try {
+                inFlight = flushed.get(userId);
+                // The flusher skips it if it hasn't locked the row yet
+                boolean droppedInFlight = inFlight != null && inFlight.supersede();
+                if (inFlight == null || !inFlight.isWriting()) {
+                    dropped = pending.remove(userId);
+                    if (dropped == null && droppedInFlight) {
+                        dropped = inFlight;
+                        // Its journal file is deleted once that flush completes
+                        position = journal.append(new UserUpdateJournal.Entry(userId, inFlight.acceptedAt, inFlight.input));
+                    }
+                    if (dropped != null) {
+                        superseding.put(userId, dropped);
+                    }
+                    break;
+                }
+            } finally {
+                bufferLock.readLock().unlock();
+            }
+            awaitChunk(inFlight);
+        }
+        if (dropped == null) {
+            return;
+        }
+        journal.sync(position);
+
+        Pending superseded = dropped;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                journalSuperseded(userId, superseded);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    restore(userId, superseded);
+                }
+            }
+        });
+    }
+
+    private void journalSuperseded(long userId, Pending dropped) {
+        long[] position = new long[1];
+        bufferLock.readLock().lock();
+        try {
+            superseding.remove(userId, dropped);
+            // Anything buffered since is newer than the direct write, so it goes after the marker
+            pending.compute(userId, (id, newer) -> {
+                position[0] = journal.append(new UserUpdateJournal.Entry(id, System.currentTimeMillis(), null));
+                if (newer != null) {
+                    position[0] = journal.append(new UserUpdateJournal.Entry(id, newer.acceptedAt, newer.input));
+                }
+                return newer;
+            });
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+        journal.sync(position[0]);
+    }
+
+    private void restore(long userId, Pending dropped) {
+        bufferLock.readLock().lock();
+        try {
+            if (superseding.remove(userId, dropped)) {
+                // Still in the journal; anything buffered since is newer
+                pending.merge(userId, new Pending(dropped.input, dropped.acceptedAt, dropped.updatedAt),
+                        (current, restored) -> current.isSuperseded() ? restored : current);
+            }
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+    }
+
+    private void awaitChunk(Pending update) {
+        synchronized (chunkCompleted) {
+            while (update.isWriting()) {
+                try {
+                    chunkCompleted.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a user update to be written", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * The user with any update still buffered for it applied
+     */
+    public User overlay(User user) {
+        Pending update = buffered(user.getId());
+        return update != null ? view(user, update.input, update.updatedAt) : user;
+    }
+
+    /**
+     * The users with any updates still buffered for them applied
+     */
+    public List<User> overlay(List<User> users) {
+        if (pending.isEmpty() && flushed.isEmpty()) {
+            return users;
+        }
+        return users.stream().map(this::overlay).toList();
+    }
+
+    /**
+     * Write everything buffered so far and wait for it to commit, unless nothing
+     * is buffered or being written
+     */
+    public void flushIfBuffered() {
+        if (!pending.isEmpty() || !flushed.isEmpty()) {
+            flush();
+        }
+    }
+
+    /**
+     * Write everything buffered so far and wait for it to commit
+     */
+    public void flush() {
+        try {
+            executor.submit(this::flushPending).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while flushing user updates", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Failed to flush user updates", ex.getCause());
+        }
+    }
+
+    private Pending buffered(long userId) {
+        Pending update = pending.get(userId);
+        if (update == null) {
+            update = flushed.get(userId);
+        }
+        return update != null && !update.isSuperseded() ? update : null;
+    }
+
+    private Pending coalesce(Pending older, Pending newer) {
+        coalesced.increment();
+        return older.replacedBy(newer);
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            executor.execute(this::flushSafely);
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flushPending();
+        } catch (RuntimeException ex) {
+            log.warn("Failed to write buffered user updates, will retry", ex);
+        }
+    }
+
+    private void flushPending() {
+        flushRequested.set(false);
+        Map<Long, Pending> batch;
+        long generation;
+        long position = 0;
+        bufferLock.writeLock().lock();
+        try {
+            if (pending.isEmpty()) {
+                flushed = Map.of();
+                return;
+            }
+            generation = journal.roll();
+            batch = pending;
+            pending = new ConcurrentHashMap<>();
+            // Users with a direct write still open keep their updates buffered, and in the journal, until it completes
+            for (Map.Entry<Long, Pending> open : superseding.entrySet()) {
+                Pending dropped = open.getValue();
+                position = journal.append(new UserUpdateJournal.Entry(open.getKey(), dropped.acceptedAt, dropped.input));
+                Pending newer = batch.remove(open.getKey());
+                if (newer != null) {
+                    pending.put(open.getKey(), newer);
+                    position = journal.append(new UserUpdateJournal.Entry(open.getKey(), newer.acceptedAt, newer.input));
+                }
+            }
+            flushed = batch;
+        } finally {
+            bufferLock.writeLock().unlock();
+        }
+        journal.sync(position);
+
+        long start = System.nanoTime();
+        try {
+            write(batch);
+        } catch (RuntimeException ex) {
+            batch.forEach((userId, update) -> {
+                if (update.isBuffered()) {
+                    pending.merge(userId, update, (newer, failed) -> failed.replacedBy(newer));
+                }
+            });
+            throw ex;
+        }
+        long committedAt = System.currentTimeMillis();
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSize.record(batch.size());
+        batch.values().forEach(update -> lagTimer.record(Math.max(0, committedAt - update.acceptedAt), TimeUnit.MILLISECONDS));
+        journal.deleteBefore(generation);
+    }
+
+    private void write(Map<Long, Pending> batch) {
+        Map<Integer, List<Long>> byShard = new TreeMap<>();
+        for (Long userId : batch.keySet()) {
+            byShard.computeIfAbsent(shardRouter.shardFor(userId), shard -> new ArrayList<>()).add(userId);
+        }
+        byShard.forEach((shard, userIds) -> {
+            for (int from = 0; from < userIds.size(); from += maxBatch) {
+                List<Long> chunk = userIds.subList(from, Math.min(userIds.size(), from + maxBatch));
+                shardRouter.onShard(shard, () -> transactionTemplate.execute(status -> writeChunk(chunk, batch)));
+            }
+        });
+    }
+
+    private Void writeChunk(List<Long> userIds, Map<Long, Pending> batch) {
+        List<Pending> claimed = new ArrayList<>(userIds.size());
+        List<User> changed = new ArrayList<>(userIds.size());
+        List<Integer> changedFields = new ArrayList<>(userIds.size());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (changed.isEmpty()) {
+                    return;
+                }
+                changeRelay.requestDrain();
+                if (readModel != null) {
+                    changed.forEach(readModel::upsert);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                claimed.forEach(update -> update.completed(status == STATUS_COMMITTED));
+                synchronized (chunkCompleted) {
+                    chunkCompleted.notifyAll();
+                }
+            }
+        });
+        // Users deleted in the meantime are simply not found
+        for (User user : userRepository.findByIdInOrderByIdAsc(userIds)) {
+            Pending update = batch.get(user.getId());
+            // With the row locked, a direct write that supersedes it from now on waits for this transaction
+            if (!update.claim()) {
+                continue;
+            }
+            claimed.add(update);
+            int fields = UserService.changedFields(user, update.input) & ~UserChange.EMAIL;
+            if (fields == 0) {
+                continue;
+            }
+            user.setName(update.input.getName());
+            user.setPhone(update.input.getPhone());
+            user.setAddress(update.input.getAddress());
+            // The time the caller was already given as updatedAt
+            user.acceptedUpdateAt(toLocalDateTime(update.updatedAt));
+            changed.add(user);
+            changedFields.add(fields);
+        }
+        if (changed.isEmpty()) {
+            return null;
+        }
+        userRepository.flush();
+
+        long changedAt = System.currentTimeMillis();
+        List<UserChangeOutbox> changes = new ArrayList<>(changed.size());
+        for (int i = 0; i < changed.size(); i++) {
+            User user = changed.get(i);
+            changes.add(new UserChangeOutbox(UserChangeOp.UPDATE, user.getId(), user.getVersion(), changedFields.get(i), changedAt));
+        }
+        outboxRepository.saveAll(changes);
+        return null;
+    }
+
+    // The stored user as the flush will leave it: one new version stamped with the latest acceptance,
+    // however many updates were coalesced, or unchanged if the input matches what is stored
+    private static User view(User user, UserInput input, long updatedAt) {
+        User view = new User(input.getName(), user.getEmail(), input.getPhone(), input.getAddress());
+        view.setId(user.getId());
+        view.setCreatedAt(user.getCreatedAt());
+        if ((UserService.changedFields(user, input) & ~UserChange.EMAIL) == 0) {
+            view.setUpdatedAt(user.getUpdatedAt());
+            view.setVersion(user.getVersion());
+        } else {
+            view.setUpdatedAt(toLocalDateTime(updatedAt));
+            view.setVersion(user.getVersion() != null ? user.getVersion() + 1 : null);
+        }
+        return view;
+    }
+
+    // Entity timestamps are local date-times of the default zone, see User#onUpdate
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    /**
+     * Write what is still buffered before shutting down; anything that fails to
+     * write stays in the journal for the next start
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+            flushPending();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException ex) {
+            log.warn("Failed to write buffered user updates on shutdown, they stay in the journal", ex);
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * The latest buffered input for a user. {@code acceptedAt} is when the oldest
+     * update it replaced was accepted, which is what flush lag is measured from.
+     * Once taken by a flush it is either claimed by the chunk that locked its row
+     * or superseded by a direct write, whichever comes first.
+     */
+    private static final class Pending {
+
+        private static final int BUFFERED = 0;
+        private static final int WRITING = 1;
+        private static final int WRITTEN = 2;
+        private static final int SUPERSEDED = 3;
+
+        private final UserInput input;
+        private final long acceptedAt;
+        private final long updatedAt;
+        private final AtomicInteger state = new AtomicInteger(BUFFERED);
+
+        Pending(UserInput input, long acceptedAt) {
+            this(input, acceptedAt, acceptedAt);
+        }
+
+        private Pending(UserInput input, long acceptedAt, long updatedAt) {
+            this.input = input;
+            this.acceptedAt = acceptedAt;
+            this.updatedAt = updatedAt;
+        }
+
+        Pending replacedBy(Pending newer) {
+            return new Pending(newer.input, Math.min(acceptedAt, newer.acceptedAt), newer.updatedAt);
+        }
+
+        boolean claim() {
+            return state.compareAndSet(BUFFERED, WRITING);
+        }
+
+        void completed(boolean committed) {
+            state.compareAndSet(WRITING, committed ? WRITTEN : BUFFERED);
+        }
+
+        boolean supersede() {
+            return state.compareAndSet(BUFFERED, SUPERSEDED);
+        }
+
+        boolean isBuffered() {
+            return state.get() == BUFFERED;
+        }
+
+        boolean isWriting() {
+            return state.get() == WRITING;
+        }
+
+        boolean isSuperseded() {
+            return state.get() == SUPERSEDED;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.graphqlcrudapi.web;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * The one place {@code LocalDateTime} values are turned into API timestamps,
+ * shared by the GraphQL {@code DateTime} scalar and the {@code ObjectMapper}.
+ * <p>
+ * The text form is {@code yyyy-MM-dd'T'HH:mm:ss}. Rather than going through a
+ * {@link DateTimeFormatter} for every value, the 19 characters are written
+ * straight into a byte array, and recently encoded seconds are kept in a small
+ * direct-mapped cache. Rows created or updated in the same second, which is
+ * common in list results, then share one String and encode without allocating.
+ * Years outside 0-9999 go through the formatter.
+ * <p>
+ * Values are local date-times in UTC, which is also how epoch milliseconds are
+ * derived from them.
+ */
+public final class DateTimeEncoder {
+
+    /**
+     * How a request wants {@code DateTime} values
+     */
+    public enum Format {
+        ISO, EPOCH_MILLIS
+    }
+
+    public static final String PATTERN = "yyyy-MM-dd'T'HH:mm:ss";
+
+    public static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(PATTERN);
+
+    private static final int LENGTH = 19;
+
+    private static final int CACHE_SIZE = 1024;
+
+    // Entries are immutable, so threads racing on a slot at worst encode the same second twice
+    private static final Entry[] cache = new Entry[CACHE_SIZE];
+
+    private DateTimeEncoder() {
+    }
+
+    public static String encode(LocalDateTime value) {
+        long epochSecond = value.toEpochSecond(ZoneOffset.UTC);
+        int slot = (int) (epochSecond & (CACHE_SIZE - 1));
+        Entry entry = cache[slot];
+        if (entry != null && entry.epochSecond == epochSecond) {
+            return entry.text;
+        }
+        String text = format(value);
+        cache[slot] = new Entry(epochSecond, text);
+        return text;
+    }
+
+    public static long toEpochMillis(LocalDateTime value) {
+        return value.toEpochSecond(ZoneOffset.UTC) * 1000 + value.getNano() / 1_000_000;
+    }
+
+    /**
+     * The value in the requested format: a String for {@link Format#ISO}, a Long
+     * for {@link Format#EPOCH_MILLIS}
+     */
+    public static Object encode(LocalDateTime value, Format format) {
+        return format == Format.EPOCH_MILLIS ? toEpochMillis(value) : encode(value);
+    }
+
+    public static LocalDateTime parse(String text) {
+        return LocalDateTime.parse(text, FORMATTER);
+    }
+
+    private static String format(LocalDateTime value) {
+        int year = value.getYear();
+        if (year < 0 || year > 9999) {
+            return value.format(FORMATTER);
+        }
+        byte[] bytes = new byte[LENGTH];
+        writeDigits(bytes, 0, year / 100);
+        writeDigits(bytes, 2, year % 100);
+        bytes[4] = '-';
+        writeDigits(bytes, 5, value.getMonthValue());
+        bytes[7] = '-';
+        writeDigits(bytes, 8, value.getDayOfMonth());
+        bytes[10] = 'T';
+        writeDigits(bytes, 11, value.getHour());
+        bytes[13] = ':';
+        writeDigits(bytes, 14, value.getMinute());
+        bytes[16] = ':';
+        writeDigits(bytes, 17, value.getSecond());
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void writeDigits(byte[] bytes, int offset, int twoDigits) {
+        bytes[offset] = (byte) ('0' + twoDigits / 10);
+        bytes[offset + 1] = (byte) ('0' + twoDigits % 10);
+    }
+
+    private record Entry(long epochSecond, String text) {
+    }
+}
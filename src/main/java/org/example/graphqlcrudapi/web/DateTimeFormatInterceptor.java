@@ -0,0 +1,41 @@
+package org.example.graphqlcrudapi.web;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * Lets a client ask for {@code DateTime} values as epoch milliseconds instead
+ * of text by sending {@code X-DateTime-Format: epoch-millis}. The choice is put
+ * in the GraphQLContext, where the scalar's coercing picks it up. Without the
+ * header, or with {@code iso}, values stay {@code yyyy-MM-dd'T'HH:mm:ss}.
+ */
+public class DateTimeFormatInterceptor implements WebGraphQlInterceptor {
+
+    public static final String FORMAT_HEADER = "X-DateTime-Format";
+
+    private static final String EPOCH_MILLIS = "epoch-millis";
+
+    @Override
+    public Mono<WebGraphQlResponse> intercept(WebGraphQlRequest request, Chain chain) {
+        if (format(request.getHeaders()) == DateTimeEncoder.Format.EPOCH_MILLIS) {
+            request.configureExecutionInput((input, builder) -> {
+                input.getGraphQLContext().put(DateTimeEncoder.Format.class, DateTimeEncoder.Format.EPOCH_MILLIS);
+                return input;
+            });
+        }
+        return chain.next(request);
+    }
+
+    /**
+     * The format the headers ask for; anything but {@code epoch-millis}, in any
+     * case, is {@link DateTimeEncoder.Format#ISO}
+     */
+    static DateTimeEncoder.Format format(HttpHeaders headers) {
+        return EPOCH_MILLIS.equalsIgnoreCase(headers.getFirst(FORMAT_HEADER))
+                ? DateTimeEncoder.Format.EPOCH_MILLIS
+                : DateTimeEncoder.Format.ISO;
+    }
+}
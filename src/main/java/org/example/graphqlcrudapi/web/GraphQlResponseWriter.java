@@ -0,0 +1,111 @@
+package org.example.graphqlcrudapi.web;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a GraphQL result map straight to an output stream with a Jackson
+ * {@link JsonGenerator}, instead of handing it to the {@code ObjectMapper}.
+ * <p>
+ * graphql-java results only ever contain maps, lists, strings, numbers, booleans
+ * and nulls, so they are walked directly without any serializer lookup. Field
+ * names known from the schema are written from pre-encoded UTF-8 bytes, and the
+ * generator's buffers come from Jackson's per-thread buffer recycler. Anything
+ * unexpected (for example a POJO placed in the extensions) falls back to the
+ * {@code ObjectMapper}.
+ */
+public class GraphQlResponseWriter {
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, SerializableString> encodedNames;
+
+    public GraphQlResponseWriter(ObjectMapper objectMapper, Collection<String> knownFieldNames) {
+        this.objectMapper = objectMapper;
+        Map<String, SerializableString> names = new HashMap<>();
+        for (String name : List.of("data", "errors", "extensions", "message", "locations", "path", "line", "column")) {
+            names.put(name, encode(name));
+        }
+        for (String name : knownFieldNames) {
+            names.put(name, encode(name));
+        }
+        this.encodedNames = Map.copyOf(names);
+    }
+
+    private static SerializableString encode(String name) {
+        SerializedString encoded = new SerializedString(name);
+        // Force the UTF-8 and quoted forms to be computed once, up front
+        encoded.asUnquotedUTF8();
+        encoded.asQuotedUTF8();
+        encoded.asQuotedChars();
+        return encoded;
+    }
+
+    /**
+     * Serialize the given result to the output stream. The stream is flushed
+     * but not closed.
+     */
+    public void write(Map<String, Object> result, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeMap(generator, result);
+        }
+    }
+
+    private void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String string) {
+            generator.writeString(string);
+        } else if (value instanceof Map<?, ?> map) {
+            writeMap(generator, map);
+        } else if (value instanceof List<?> list) {
+            generator.writeStartArray(list, list.size());
+            for (Object element : list) {
+                writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof Boolean bool) {
+            generator.writeBoolean(bool);
+        } else if (value instanceof Integer number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Long number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Double number) {
+            generator.writeNumber(number);
+        } else if (value instanceof BigDecimal number) {
+            generator.writeNumber(number);
+        } else if (value instanceof BigInteger number) {
+            generator.writeNumber(number);
+        } else {
+            objectMapper.writeValue(generator, value);
+        }
+    }
+
+    private void writeMap(JsonGenerator generator, Map<?, ?> map) throws IOException {
+        generator.writeStartObject(map, map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            String name = String.valueOf(entry.getKey());
+            SerializableString encoded = encodedNames.get(name);
+            if (encoded != null) {
+                generator.writeFieldName(encoded);
+            } else {
+                generator.writeFieldName(name);
+            }
+            writeValue(generator, entry.getValue());
+        }
+        generator.writeEndObject();
+    }
+}
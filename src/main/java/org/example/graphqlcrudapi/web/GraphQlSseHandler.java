@@ -0,0 +1,75 @@
+package org.example.graphqlcrudapi.web;
+
+import graphql.ExecutionResult;
+import jakarta.servlet.ServletException;
+import org.reactivestreams.Publisher;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.util.AlternativeJdkIdGenerator;
+import org.springframework.util.IdGenerator;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Serves GraphQL requests over server-sent events, following the "distinct
+ * connections" mode of the GraphQL over SSE protocol. Every result produced by
+ * the operation is written as a {@code next} event as soon as it is available,
+ * followed by a single {@code complete} event. Queries and mutations produce one
+ * {@code next} event; subscriptions produce one per emitted value.
+ */
+public class GraphQlSseHandler {
+
+    private final WebGraphQlHandler graphQlHandler;
+
+    private final Duration timeout;
+
+    private final IdGenerator idGenerator = new AlternativeJdkIdGenerator();
+
+    public GraphQlSseHandler(WebGraphQlHandler graphQlHandler, Duration timeout) {
+        this.graphQlHandler = graphQlHandler;
+        this.timeout = timeout;
+    }
+
+    public ServerResponse handleRequest(ServerRequest request) throws ServletException {
+        WebGraphQlRequest graphQlRequest = WebGraphQlRequests.create(request, idGenerator);
+
+        Flux<Map<String, Object>> results = graphQlHandler.handleRequest(graphQlRequest)
+                .flatMapMany(GraphQlSseHandler::toResults);
+
+        return ServerResponse.sse(sse -> {
+            Disposable subscription = results.subscribe(
+                    result -> send(sse, "next", result),
+                    sse::error,
+                    () -> {
+                        send(sse, "complete", "");
+                        sse.complete();
+                    });
+            sse.onTimeout(subscription::dispose);
+            sse.onError(ex -> subscription.dispose());
+        }, timeout);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Flux<Map<String, Object>> toResults(WebGraphQlResponse response) {
+        if (response.getData() instanceof Publisher<?> publisher) {
+            return Flux.from((Publisher<ExecutionResult>) publisher).map(ExecutionResult::toSpecification);
+        }
+        return Flux.just(response.toMap());
+    }
+
+    private static void send(ServerResponse.SseBuilder sse, String event, Object data) {
+        try {
+            sse.event(event).data(data);
+        } catch (IOException ex) {
+            // Client went away: surface it so the upstream subscription gets cancelled
+            throw new IllegalStateException("Failed to write server-sent event", ex);
+        }
+    }
+}
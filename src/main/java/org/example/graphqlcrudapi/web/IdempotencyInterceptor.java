@@ -0,0 +1,302 @@
+package org.example.graphqlcrudapi.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import graphql.ErrorClassification;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.language.Document;
+import graphql.language.OperationDefinition;
+import graphql.parser.InvalidSyntaxException;
+import graphql.parser.Parser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.graphql.execution.ErrorType;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.support.DefaultExecutionGraphQlResponse;
+import org.springframework.http.HttpHeaders;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs a mutation sent with an {@code Idempotency-Key} header at most once per
+ * key, so a client retrying after a network timeout gets the first result back
+ * instead of writing again. Keys are chosen by clients, so each caller has its
+ * own: the authenticated principal, or else the client address, together with
+ * the {@code Authorization} header if one is sent.
+ * <p>
+ * The first request with a key executes and its result is kept for {@code ttl}
+ * in a store of at most {@code maxEntries} keys. The oldest finished keys are
+ * dropped first; keys still executing are never dropped. A retry gets the kept
+ * result with an {@code Idempotent-Replayed: true} header and doesn't reach the
+ * database. A duplicate that arrives while the first request is still running
+ * waits for its result. Reusing a key for a different document, operation or
+ * variables is rejected; variables are compared regardless of key order.
+ * <p>
+ * Once execution has started the mutation may have committed, so whatever it
+ * ends with is kept, {@code INTERNAL_ERROR} and {@code TIMEOUT} errors included.
+ * An execution that fails or is cancelled without a result is kept as an
+ * {@code OUTCOME_UNKNOWN} error. Only requests rejected before execution, such as
+ * invalid documents, leave the key free to be used again. Queries and requests
+ * without the header pass through untouched.
+ */
+public class IdempotencyInterceptor implements WebGraphQlInterceptor {
+
+    public static final String KEY_HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final ErrorClassification OUTCOME_UNKNOWN = ErrorClassification.errorClassification("OUTCOME_UNKNOWN");
+
+    private static final ObjectWriter CANONICAL_JSON = new ObjectMapper().writer(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+    private static final AbandonedException ABANDONED = new AbandonedException();
+
+    private final int maxEntries;
+
+    private final long ttlNanos;
+
+    private final MeterRegistry meterRegistry;
+
+    // Insertion ordered, so the eldest entries are also the first to expire. Guarded by itself.
+    private final LinkedHashMap<Scope, Entry> entries = new LinkedHashMap<>();
+
+    public IdempotencyInterceptor(int maxEntries, Duration ttl, MeterRegistry meterRegistry) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.meterRegistry = meterRegistry;
+        if (meterRegistry != null) {
+            Gauge.builder("graphql.idempotency.entries", entries, LinkedHashMap::size)
+                    .description("Idempotency keys currently remembered")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public Mono<WebGraphQlResponse> intercept(WebGraphQlRequest request, Chain chain) {
+        String key = request.getHeaders().getFirst(KEY_HEADER);
+        if (key == null || key.isBlank() || !isMutation(request)) {
+            return chain.next(request);
+        }
+        // A replay adds a response header, so the response must not be committed early by a disconnect probe
+        StreamingGraphQlHttpHandler.expectResponseHeaders(request);
+        if (key.length() > MAX_KEY_LENGTH) {
+            return Mono.just(rejected(request, KEY_HEADER + " must be at most " + MAX_KEY_LENGTH + " characters"));
+        }
+        Scope scope = new Scope(caller(request), key);
+        byte[] fingerprint = fingerprint(request);
+        Entry entry;
+        boolean owner = false;
+        synchronized (entries) {
+            long now = System.nanoTime();
+            expire(now);
+            entry = entries.get(scope);
+            if (entry == null) {
+                entry = new Entry(fingerprint, now);
+                entries.put(scope, entry);
+                owner = true;
+                evictEldestFinished();
+            }
+        }
+        if (owner) {
+            count("executed");
+            return execute(scope, entry, request, chain);
+        }
+        if (!Arrays.equals(entry.fingerprint, fingerprint)) {
+            count("conflict");
+            return Mono.just(rejected(request, KEY_HEADER + " was already used for a different request"));
+        }
+        count(entry.result.isDone() ? "replayed" : "joined");
+        // suppressCancel: a waiter going away must not cancel the shared result
+        return Mono.fromFuture(entry.result, true)
+                .map(result -> replay(request, result))
+                // The first request was rejected before executing, so try again as if first
+                .onErrorResume(AbandonedException.class, ex -> intercept(request, chain));
+    }
+
+    private Mono<WebGraphQlResponse> execute(Scope scope, Entry entry, WebGraphQlRequest request, Chain chain) {
+        return chain.next(request)
+                .doOnSuccess(response -> {
+                    if (response == null) {
+                        entry.result.complete(outcomeUnknown());
+                    } else if (executed(response.getExecutionResult())) {
+                        entry.result.complete(response.getExecutionResult());
+                    } else {
+                        abandon(scope, entry);
+                    }
+                })
+                .doOnError(ex -> entry.result.complete(outcomeUnknown()))
+                .doOnCancel(() -> entry.result.complete(outcomeUnknown()));
+    }
+
+    private void abandon(Scope scope, Entry entry) {
+        synchronized (entries) {
+            entries.remove(scope, entry);
+        }
+        entry.result.completeExceptionally(ABANDONED);
+    }
+
+    // Guarded by entries
+    private void expire(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (now - entry.createdAt <= ttlNanos) {
+                return;
+            }
+            if (entry.result.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // Guarded by entries. Running out of finished entries lets the store grow past maxEntries
+    // by the number of executions in flight.
+    private void evictEldestFinished() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            if (iterator.next().result.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void count(String outcome) {
+        if (meterRegistry != null) {
+            Counter.builder("graphql.idempotency.requests")
+                    .description("Mutations sent with an idempotency key, by how they were answered")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    private static WebGraphQlResponse replay(WebGraphQlRequest request, ExecutionResult result) {
+        WebGraphQlResponse response = new WebGraphQlResponse(
+                new DefaultExecutionGraphQlResponse(request.toExecutionInput(), result));
+        response.getResponseHeaders().set(REPLAYED_HEADER, "true");
+        return response;
+    }
+
+    private static WebGraphQlResponse rejected(WebGraphQlRequest request, String message) {
+        GraphQLError error = GraphqlErrorBuilder.newError()
+                .errorType(ErrorType.BAD_REQUEST)
+                .message(message)
+                .build();
+        return new WebGraphQlResponse(new DefaultExecutionGraphQlResponse(request.toExecutionInput(),
+                ExecutionResultImpl.newExecutionResult().addError(error).build()));
+    }
+
+    private static ExecutionResult outcomeUnknown() {
+        GraphQLError error = GraphqlErrorBuilder.newError()
+                .errorType(OUTCOME_UNKNOWN)
+                .message("The first request with this " + KEY_HEADER + " ended without a result; it may or may not have been applied")
+                .build();
+        return ExecutionResultImpl.newExecutionResult().addError(error).build();
+    }
+
+    /**
+     * Whether execution started; a document that failed to parse or validate has no data at all
+     */
+    private static boolean executed(ExecutionResult result) {
+        return result.isDataPresent();
+    }
+
+    private static boolean isMutation(WebGraphQlRequest request) {
+        Document document;
+        try {
+            document = Parser.parse(request.getDocument());
+        } catch (InvalidSyntaxException ex) {
+            // Left for execution to report
+            return false;
+        }
+        String operationName = request.getOperationName();
+        for (OperationDefinition operation : document.getDefinitionsOfType(OperationDefinition.class)) {
+            if (operationName == null || operationName.equals(operation.getName())) {
+                return operation.getOperation() == OperationDefinition.Operation.MUTATION;
+            }
+        }
+        return false;
+    }
+
+    // Credentials are kept as a digest only
+    private static String caller(WebGraphQlRequest request) {
+        Object identity = request.getAttributes().get(WebGraphQlRequests.CALLER_ATTRIBUTE);
+        String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorization == null) {
+            return String.valueOf(identity);
+        }
+        return identity + " " + HexFormat.of().formatHex(sha256().digest(authorization.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] fingerprint(WebGraphQlRequest request) {
+        MessageDigest digest = sha256();
+        digest.update(request.getDocument().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(String.valueOf(request.getOperationName()).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        try {
+            digest.update(CANONICAL_JSON.writeValueAsBytes(request.getVariables()));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to serialize GraphQL variables", ex);
+        }
+        digest.update((byte) 0);
+        // The kept result is already coerced, so it only fits requests resolving to the same DateTime format
+        digest.update(DateTimeFormatInterceptor.format(request.getHeaders()).name()
+                .getBytes(StandardCharsets.UTF_8));
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private record Scope(String caller, String key) {
+    }
+
+    private static final class Entry {
+
+        private final byte[] fingerprint;
+
+        private final long createdAt;
+
+        private final CompletableFuture<ExecutionResult> result = new CompletableFuture<>();
+
+        private Entry(byte[] fingerprint, long createdAt) {
+            this.fingerprint = fingerprint;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * Completes a shared result whose request was rejected before executing
+     */
+    private static final class AbandonedException extends RuntimeException {
+
+        private AbandonedException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package org.example.graphqlcrudapi.web;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.graphqlcrudapi.execution.ExecutionBudget;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.server.webmvc.GraphQlHttpHandler;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.AlternativeJdkIdGenerator;
+import org.springframework.util.IdGenerator;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Drop-in replacement for Spring's {@link GraphQlHttpHandler} that writes the
+ * execution result directly to the servlet output stream through a
+ * {@link GraphQlResponseWriter}, optionally gzip-compressed, rather than going
+ * through the generic JSON message converter.
+ * <p>
+ * Each request carries an {@link ExecutionBudget} in its GraphQLContext that is
+ * cancelled if the async request fails or times out, which is how a client
+ * disconnect reaches the JDBC statements still running for it. Operations run on
+ * the request thread. Tomcat only notices a disconnect when writing to the
+ * connection, so with a {@code disconnectProbeInterval} and an
+ * {@code executionScheduler} the operation runs on that scheduler instead, and
+ * a timer of its own writes a space ahead of the JSON every interval to find
+ * out whether the client is still there. Interceptors that may add response
+ * headers call {@link #expectResponseHeaders} and the request is not probed,
+ * since the first space commits the headers.
+ */
+public class StreamingGraphQlHttpHandler extends GraphQlHttpHandler implements AutoCloseable {
+
+    private static final String RESPONSE_HEADERS_ATTRIBUTE = StreamingGraphQlHttpHandler.class.getName() + ".responseHeaders";
+
+    private static final MediaType APPLICATION_GRAPHQL_RESPONSE =
+            new MediaType("application", "graphql-response+json");
+
+    private static final List<MediaType> SUPPORTED_MEDIA_TYPES =
+            List.of(APPLICATION_GRAPHQL_RESPONSE, MediaType.APPLICATION_JSON);
+
+    private final WebGraphQlHandler graphQlHandler;
+
+    private final GraphQlResponseWriter responseWriter;
+
+    private final boolean gzip;
+
+    private final Scheduler executionScheduler;
+
+    private final Duration disconnectProbeInterval;
+
+    // Only present when probing
+    private final ScheduledThreadPoolExecutor probeTimer;
+
+    private final IdGenerator idGenerator = new AlternativeJdkIdGenerator();
+
+    public StreamingGraphQlHttpHandler(WebGraphQlHandler graphQlHandler,
+                                       GraphQlResponseWriter responseWriter,
+                                       boolean gzip,
+                                       Scheduler executionScheduler,
+                                       Duration disconnectProbeInterval) {
+        super(graphQlHandler);
+        this.graphQlHandler = graphQlHandler;
+        this.responseWriter = responseWriter;
+        this.gzip = gzip;
+        boolean probing = executionScheduler != null && !disconnectProbeInterval.isZero();
+        this.executionScheduler = probing ? executionScheduler : null;
+        this.disconnectProbeInterval = disconnectProbeInterval;
+        this.probeTimer = probing ? new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "graphql-disconnect-probe");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        if (probeTimer != null) {
+            probeTimer.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    /**
+     * Keep disconnect probes from committing the response of this request before
+     * the caller has added its headers
+     */
+    public static void expectResponseHeaders(WebGraphQlRequest request) {
+        if (request.getAttributes().get(RESPONSE_HEADERS_ATTRIBUTE) instanceof AtomicBoolean expected) {
+            expected.set(true);
+        }
+    }
+
+    @Override
+    public ServerResponse handleRequest(ServerRequest request) throws ServletException {
+        // The request's attributes are copied, so interceptors get a flag to set rather than the map
+        AtomicBoolean headersExpected = new AtomicBoolean();
+        if (probeTimer != null) {
+            request.servletRequest().setAttribute(RESPONSE_HEADERS_ATTRIBUTE, headersExpected);
+        }
+        WebGraphQlRequest graphQlRequest = WebGraphQlRequests.create(request, idGenerator);
+        MediaType contentType = selectResponseMediaType(request);
+        boolean compress = gzip && acceptsGzip(request.headers().header(HttpHeaders.ACCEPT_ENCODING));
+
+        ExecutionBudget budget = ExecutionBudget.start("Request", null);
+        graphQlRequest.configureExecutionInput((input, builder) ->
+                builder.graphQLContext(Map.of(ExecutionBudget.CONTEXT_KEY, budget)).build());
+        WebAsyncUtils.getAsyncManager(request.servletRequest())
+                .registerDeferredResultInterceptor(ExecutionBudget.class.getName(), new CancellingInterceptor(budget));
+        ResponseOutput output = new ResponseOutput(contentType, compress);
+
+        Mono<WebGraphQlResponse> execution = graphQlHandler.handleRequest(graphQlRequest);
+        HttpServletResponse probedResponse = currentResponse();
+        if (probeTimer != null && probedResponse != null) {
+            long interval = disconnectProbeInterval.toMillis();
+            ScheduledFuture<?> probe = probeTimer.scheduleWithFixedDelay(() -> {
+                if (!headersExpected.get()) {
+                    output.probe(probedResponse, budget);
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+            execution = execution.subscribeOn(executionScheduler).doFinally(signal -> probe.cancel(false));
+        }
+        Mono<ServerResponse> responseMono = execution
+                .map(response -> ServerResponse.ok()
+                        .headers(headers -> headers.putAll(response.getResponseHeaders()))
+                        .contentType(contentType)
+                        .build((servletRequest, servletResponse) -> {
+                            output.write(response, servletResponse);
+                            return null;
+                        }));
+
+        return ServerResponse.async(responseMono);
+    }
+
+    @Override
+    public void close() {
+        if (probeTimer != null) {
+            probeTimer.shutdownNow();
+        }
+    }
+
+    /**
+     * The response body of one request. Probing writes a space ahead of the JSON,
+     * which commits the status and headers.
+     */
+    private final class ResponseOutput {
+
+        private final MediaType contentType;
+
+        private final boolean compress;
+
+        // Guarded by this
+        private OutputStream out;
+        private boolean done;
+
+        ResponseOutput(MediaType contentType, boolean compress) {
+            this.contentType = contentType;
+            this.compress = compress;
+        }
+
+        /**
+         * Cancel the request if the client is gone. The first probe usually
+         * succeeds into the closed socket; the next one fails.
+         */
+        synchronized void probe(HttpServletResponse servletResponse, ExecutionBudget budget) {
+            if (done) {
+                return;
+            }
+            try {
+                OutputStream stream = open(servletResponse);
+                stream.write(' ');
+                stream.flush();
+            } catch (IOException ex) {
+                done = true;
+                budget.cancel(ExecutionBudget.Reason.CLIENT_DISCONNECT);
+            }
+        }
+
+        synchronized void write(WebGraphQlResponse response, HttpServletResponse servletResponse) throws IOException {
+            done = true;
+            if (compress) {
+                try (OutputStream stream = open(servletResponse)) {
+                    responseWriter.write(response.toMap(), stream);
+                }
+            } else {
+                responseWriter.write(response.toMap(), open(servletResponse));
+            }
+        }
+
+        // Once probed, the body continues on the stream the probe started
+        private OutputStream open(HttpServletResponse servletResponse) throws IOException {
+            if (out == null) {
+                servletResponse.setContentType(contentType.toString());
+                if (compress) {
+                    servletResponse.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                    servletResponse.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                    out = new GZIPOutputStream(servletResponse.getOutputStream(), 8192, true);
+                } else {
+                    out = servletResponse.getOutputStream();
+                }
+            }
+            return out;
+        }
+    }
+
+    private record CancellingInterceptor(ExecutionBudget budget) implements DeferredResultProcessingInterceptor {
+
+        @Override
+        public <T> boolean handleTimeout(NativeWebRequest request, DeferredResult<T> deferredResult) {
+            budget.cancel(ExecutionBudget.Reason.TIMEOUT);
+            return true;
+        }
+
+        @Override
+        public <T> boolean handleError(NativeWebRequest request, DeferredResult<T> deferredResult, Throwable t) {
+            budget.cancel(ExecutionBudget.Reason.CLIENT_DISCONNECT);
+            return true;
+        }
+    }
+
+    private static HttpServletResponse currentResponse() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                ? attributes.getResponse()
+                : null;
+    }
+
+    /**
+     * Whether an {@code Accept-Encoding} header allows gzip: listed without
+     * {@code q=0}, or not listed but covered by a {@code *} without {@code q=0}
+     */
+    static boolean acceptsGzip(List<String> acceptEncoding) {
+        double wildcard = 0;
+        for (String value : acceptEncoding) {
+            for (String coding : value.split(",")) {
+                String[] parameters = coding.split(";");
+                String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+                if (name.equals("gzip") || name.equals("x-gzip")) {
+                    return quality(parameters) > 0;
+                }
+                if (name.equals("*")) {
+                    wildcard = quality(parameters);
+                }
+            }
+        }
+        return wildcard > 0;
+    }
+
+    private static double quality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.length() > 2 && parameter.substring(0, 2).equalsIgnoreCase("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException ex) {
+                    // A weight we can't read is not a yes
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static MediaType selectResponseMediaType(ServerRequest request) {
+        for (MediaType accepted : request.headers().accept()) {
+            for (MediaType supported : SUPPORTED_MEDIA_TYPES) {
+                if (supported.equalsTypeAndSubtype(accepted)) {
+                    return supported;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+}
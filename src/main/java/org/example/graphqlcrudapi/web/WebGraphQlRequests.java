@@ -0,0 +1,61 @@
+package org.example.graphqlcrudapi.web;
+
+import jakarta.servlet.ServletException;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.http.HttpCookie;
+import org.springframework.util.IdGenerator;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.servlet.function.ServerRequest;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Builds a {@link WebGraphQlRequest} from an incoming servlet request, the same
+ * way Spring's own {@code GraphQlHttpHandler} does, for the custom transports
+ * in this package. Who sent the request is added as {@link #CALLER_ATTRIBUTE}.
+ */
+final class WebGraphQlRequests {
+
+    /**
+     * Request attribute naming the caller: the authenticated principal, or else
+     * the client address
+     */
+    static final String CALLER_ATTRIBUTE = WebGraphQlRequests.class.getName() + ".caller";
+
+    private static final ParameterizedTypeReference<Map<String, Object>> MAP_TYPE =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private WebGraphQlRequests() {
+    }
+
+    static WebGraphQlRequest create(ServerRequest request, IdGenerator idGenerator) throws ServletException {
+        // Set before the attributes are copied into the GraphQL request
+        request.servletRequest().setAttribute(CALLER_ATTRIBUTE, request.principal()
+                .map(principal -> "principal " + principal.getName())
+                .orElseGet(() -> "address " + request.servletRequest().getRemoteAddr()));
+        return new WebGraphQlRequest(
+                request.uri(), request.headers().asHttpHeaders(), initCookies(request),
+                request.attributes(), readBody(request), idGenerator.generateId().toString(),
+                LocaleContextHolder.getLocale());
+    }
+
+    private static Map<String, Object> readBody(ServerRequest request) throws ServletException {
+        try {
+            return request.body(MAP_TYPE);
+        } catch (IOException ex) {
+            throw new ServletException("Failed to read GraphQL request body", ex);
+        }
+    }
+
+    private static MultiValueMap<String, HttpCookie> initCookies(ServerRequest request) {
+        MultiValueMap<String, HttpCookie> cookies = new LinkedMultiValueMap<>();
+        request.cookies().forEach((name, values) -> values.forEach(cookie ->
+                cookies.add(name, new HttpCookie(name, cookie.getValue()))));
+        return cookies;
+    }
+}
@@ -0,0 +1,28 @@
+-- Users, the transactional change outbox and the email directory used when sharding
+
+CREATE TABLE users (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name       VARCHAR(255) NOT NULL,
+    email      VARCHAR(255) NOT NULL,
+    phone      VARCHAR(255),
+    address    VARCHAR(255),
+    created_at TIMESTAMP(6) NOT NULL,
+    updated_at TIMESTAMP(6),
+    version    BIGINT,
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE user_change_outbox (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    op             VARCHAR(10) NOT NULL,
+    user_id        BIGINT NOT NULL,
+    user_version   BIGINT NOT NULL,
+    changed_fields INTEGER NOT NULL,
+    changed_at     BIGINT NOT NULL
+);
+
+-- Only populated on the first shard when app.sharding is enabled
+CREATE TABLE user_email_shard (
+    email VARCHAR(255) NOT NULL PRIMARY KEY,
+    shard INTEGER NOT NULL
+);
@@ -0,0 +1,6 @@
+-- Identifies this database to the user change log kept on local disk, so a log
+-- written for an earlier or recreated database is not replayed as its history
+
+CREATE TABLE change_log_identity (
+    id VARCHAR(36) NOT NULL PRIMARY KEY
+);
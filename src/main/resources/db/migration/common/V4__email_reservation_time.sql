@@ -0,0 +1,4 @@
+-- When an email directory entry was written, so entries left behind by a crash
+-- between the directory and the shard can be told apart from ones in flight
+
+ALTER TABLE user_email_shard ADD COLUMN reserved_at BIGINT DEFAULT 0 NOT NULL;
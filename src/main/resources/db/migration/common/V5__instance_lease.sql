@@ -0,0 +1,8 @@
+-- Claims on features that keep their state on one instance, such as the user
+-- change log and the in-memory read model, so a second instance refuses to run them
+
+CREATE TABLE instance_lease (
+    name VARCHAR(64) NOT NULL PRIMARY KEY,
+    holder VARCHAR(36) NOT NULL,
+    expires_at BIGINT NOT NULL
+);
@@ -0,0 +1,6 @@
+-- H2 has no expression indexes, so LOWER(email) and LOWER(name) searches cannot be indexed here
+
+CREATE INDEX idx_users_phone ON users (phone);
+
+-- Keyset paging in creation order
+CREATE INDEX idx_users_created_at_id ON users (created_at, id);
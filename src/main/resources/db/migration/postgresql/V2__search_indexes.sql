@@ -0,0 +1,13 @@
+-- Searches match case-insensitive substrings (LOWER(column) LIKE '%term%'), which a plain
+-- B-tree cannot serve; trigram GIN indexes on the lowered expressions can, and they also
+-- cover prefix matches
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX idx_users_email_lower ON users USING gin (LOWER(email) gin_trgm_ops);
+
+CREATE INDEX idx_users_name_lower ON users USING gin (LOWER(name) gin_trgm_ops);
+
+CREATE INDEX idx_users_phone ON users (phone);
+
+-- Keyset paging in creation order
+CREATE INDEX idx_users_created_at_id ON users (created_at, id);
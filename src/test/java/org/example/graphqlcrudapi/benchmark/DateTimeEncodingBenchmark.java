@@ -0,0 +1,131 @@
+package org.example.graphqlcrudapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+import org.example.graphqlcrudapi.config.JacksonConfig;
+import org.example.graphqlcrudapi.web.DateTimeEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding the {@code createdAt}/{@code updatedAt} values of a
+ * {@code getAllUsers} result with a {@code DateTimeFormatter}, as the
+ * {@code DateTime} scalar and {@code ObjectMapper} used to, with
+ * {@link DateTimeEncoder}. {@code clustered} timestamps fall within a few
+ * seconds of each other, like rows inserted in bulk; {@code spread} ones are
+ * all different seconds. Run with {@code -prof gc} to see allocation:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="DateTimeEncodingBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateTimeEncodingBenchmark {
+
+    @Param({"10000"})
+    private int users;
+
+    @Param({"clustered", "spread"})
+    private String timestamps;
+
+    private LocalDateTime[] values;
+
+    private ObjectMapper formatterMapper;
+
+    private ObjectMapper encoderMapper;
+
+    @Setup
+    public void setUp() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 15, 10, 30, 0, 123_000_000);
+        values = new LocalDateTime[users * 2];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = "clustered".equals(timestamps) ? start.plusNanos(i * 1_000L) : start.plusMinutes(i * 7L);
+        }
+
+        JavaTimeModule javaTimeModule = new JavaTimeModule();
+        javaTimeModule.addSerializer(new LocalDateTimeSerializer(DateTimeEncoder.FORMATTER));
+        formatterMapper = new ObjectMapper()
+                .registerModule(javaTimeModule)
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        encoderMapper = new JacksonConfig().objectMapper();
+    }
+
+    @Benchmark
+    public long formatter() {
+        long length = 0;
+        for (LocalDateTime value : values) {
+            length += value.format(DateTimeEncoder.FORMATTER).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public long encoder() {
+        long length = 0;
+        for (LocalDateTime value : values) {
+            length += DateTimeEncoder.encode(value).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public long epochMillis() {
+        long sum = 0;
+        for (LocalDateTime value : values) {
+            sum += DateTimeEncoder.toEpochMillis(value);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long objectMapperFormatter() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        formatterMapper.writeValue(out, values);
+        return out.count;
+    }
+
+    @Benchmark
+    public long objectMapperEncoder() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        encoderMapper.writeValue(out, values);
+        return out.count;
+    }
+
+    /**
+     * Discards everything written, like a socket would from the JVM's point of view.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
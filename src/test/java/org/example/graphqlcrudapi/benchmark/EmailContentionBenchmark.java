@@ -0,0 +1,115 @@
+package org.example.graphqlcrudapi.benchmark;
+
+import org.example.graphqlcrudapi.GraphqlCrudApiApplication;
+import org.example.graphqlcrudapi.dto.UserInput;
+import org.example.graphqlcrudapi.entity.User;
+import org.example.graphqlcrudapi.exception.DuplicateEmailException;
+import org.example.graphqlcrudapi.service.UserService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many threads creating and deleting users over a small set of shared emails
+ * through {@link UserService}, on an in-memory H2 database. Besides throughput
+ * it counts how creates ended: {@code created}, {@code duplicate} (the email was
+ * taken, reported as {@code BAD_REQUEST}) and {@code failed} (anything else,
+ * which is how a lost check-then-insert race used to surface). Compares a single
+ * stripe, i.e. one global lock, with the default stripe count:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="EmailContentionBenchmark"
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="EmailContentionBenchmark -t 64 -p emails=4"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class EmailContentionBenchmark {
+
+    @Param({"1", "1024"})
+    private int stripes;
+
+    // Distinct emails shared by all threads
+    @Param({"16"})
+    private int emails;
+
+    private ConfigurableApplicationContext context;
+
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(GraphqlCrudApiApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "spring.datasource.url=jdbc:h2:mem:email-contention-" + stripes,
+                        "spring.datasource.hikari.maximum-pool-size=32",
+                        "app.users.email-lock-stripes=" + stripes,
+                        "app.graphql.sql-stats.enabled=false",
+                        "app.changelog.directory=" + Paths.get(System.getProperty("java.io.tmpdir"),
+                                "graphql-crud-api-benchmark", "changelog-" + System.nanoTime()))
+                .run();
+        userService = context.getBean(UserService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+
+        public long created;
+
+        public long duplicate;
+
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            created = 0;
+            duplicate = 0;
+            failed = 0;
+        }
+    }
+
+    @Benchmark
+    public void createThenDelete(Outcomes outcomes) {
+        String email = "contended" + ThreadLocalRandom.current().nextInt(emails) + "@example.com";
+        try {
+            User user = userService.createUser(new UserInput("Contended User", email, null, null));
+            outcomes.created++;
+            userService.deleteUser(user.getId());
+        } catch (DuplicateEmailException ex) {
+            outcomes.duplicate++;
+        } catch (RuntimeException ex) {
+            outcomes.failed++;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.graphqlcrudapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.graphqlcrudapi.config.JacksonConfig;
+import org.example.graphqlcrudapi.web.GraphQlResponseWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares serializing a {@code getAllUsers} result through the
+ * {@code ObjectMapper} (what the JSON message converter does) with the
+ * {@link GraphQlResponseWriter}. Run with {@code -prof gc} to see allocation:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="GraphQlResponseWriterBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphQlResponseWriterBenchmark {
+
+    @Param({"100", "10000"})
+    private int users;
+
+    private ObjectMapper objectMapper;
+
+    private GraphQlResponseWriter writer;
+
+    private Map<String, Object> result;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new JacksonConfig().objectMapper();
+        writer = new GraphQlResponseWriter(objectMapper,
+                List.of("getAllUsers", "id", "name", "email", "phone", "address", "createdAt", "updatedAt"));
+
+        List<Map<String, Object>> rows = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", String.valueOf(i + 1));
+            row.put("name", "User " + i);
+            row.put("email", "user" + i + "@example.com");
+            row.put("phone", "+1234567" + (i % 1000));
+            row.put("address", i + " Main St, Springfield");
+            row.put("createdAt", "2024-01-15T10:30:00");
+            row.put("updatedAt", "2024-01-15T10:30:00");
+            rows.add(row);
+        }
+        result = new LinkedHashMap<>();
+        result.put("data", Map.of("getAllUsers", rows));
+    }
+
+    @Benchmark
+    public long objectMapper() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        objectMapper.writeValue(out, result);
+        return out.count;
+    }
+
+    @Benchmark
+    public long responseWriter() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        writer.write(result, out);
+        return out.count;
+    }
+
+    @Benchmark
+    public long responseWriterGzip() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+            writer.write(result, gzip);
+        }
+        return out.count;
+    }
+
+    /**
+     * Discards everything written, like a socket would from the JVM's point of view.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.example.graphqlcrudapi.benchmark;
+
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.jdbc.DatabaseDriver;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints the query plan of each user search against the migrated schema, then
+ * times it. The SQL has the shape Hibernate generates for the repository
+ * queries; {@code legacySearch} is the former catch-all JPQL search for
+ * comparison. Runs on an in-memory H2 database by default; pass a PostgreSQL
+ * url (with its driver on the test classpath) to see the trigram and expression
+ * indexes from the {@code postgresql} migrations in use:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="UserSearchQueryPlanBenchmark"
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="UserSearchQueryPlanBenchmark -p url=jdbc:postgresql://localhost/users -p username=app -p password=secret"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserSearchQueryPlanBenchmark {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private static final String COLUMNS = "id, name, email, phone, address, created_at, updated_at, version";
+
+    private static final Map<String, Query> QUERIES = Map.of(
+            "searchByEmail", new Query(
+                    "SELECT " + COLUMNS + " FROM users WHERE LOWER(email) LIKE ? ESCAPE '\\' ORDER BY id",
+                    List.of("%user4242@%")),
+            "searchByName", new Query(
+                    "SELECT " + COLUMNS + " FROM users WHERE LOWER(name) LIKE ? ESCAPE '\\' ORDER BY id",
+                    List.of("%name 4242%")),
+            "findByPhone", new Query(
+                    "SELECT " + COLUMNS + " FROM users WHERE phone = ?",
+                    List.of("+15550004242")),
+            "pageByCreatedAt", new Query(
+                    "SELECT " + COLUMNS + " FROM users WHERE created_at >= ? AND (created_at > ? OR id > ?) " +
+                            "ORDER BY created_at, id LIMIT 100",
+                    List.of(Timestamp.valueOf(BASE_TIME.plusSeconds(42_000)), Timestamp.valueOf(BASE_TIME.plusSeconds(42_000)), 0L)),
+            "legacySearch", new Query(
+                    "SELECT " + COLUMNS + " FROM users WHERE " +
+                            "(CAST(? AS VARCHAR) IS NULL OR LOWER(name) LIKE LOWER(CONCAT('%', CAST(? AS VARCHAR), '%'))) AND " +
+                            "(CAST(? AS VARCHAR) IS NULL OR LOWER(email) LIKE LOWER(CONCAT('%', CAST(? AS VARCHAR), '%'))) AND " +
+                            "(CAST(? AS VARCHAR) IS NULL OR phone LIKE CONCAT('%', CAST(? AS VARCHAR), '%')) ORDER BY id",
+                    Arrays.asList(null, null, "user4242@", "user4242@", null, null)));
+
+    // H2 would otherwise hand back the cached result of an unchanged query
+    @Param({"jdbc:h2:mem:query-plans;DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=FALSE"})
+    private String url;
+
+    @Param({"sa"})
+    private String username;
+
+    @Param({""})
+    private String password;
+
+    @Param({"100000"})
+    private int rows;
+
+    @Param({"searchByEmail", "searchByName", "findByPhone", "pageByCreatedAt", "legacySearch"})
+    private String query;
+
+    private Connection connection;
+
+    private PreparedStatement statement;
+
+    @Setup
+    public void setUp() throws SQLException {
+        Flyway.configure()
+                .dataSource(url, username, password)
+                .locations("classpath:db/migration/common", "classpath:db/migration/" + DatabaseDriver.fromJdbcUrl(url).getId())
+                .load()
+                .migrate();
+        connection = DriverManager.getConnection(url, username, password);
+        seed();
+
+        Query selected = QUERIES.get(query);
+        // Parameters are inlined: a plan prepared with unknown values can differ from the one executed
+        try (Statement explain = connection.createStatement()) {
+            try (ResultSet plan = explain.executeQuery("EXPLAIN " + inline(selected))) {
+                System.out.println("\nPlan for " + query + ":");
+                while (plan.next()) {
+                    System.out.println("  " + plan.getString(1));
+                }
+            }
+        }
+        statement = connection.prepareStatement(selected.sql());
+        bind(statement, selected.parameters());
+    }
+
+    private void seed() throws SQLException {
+        try (Statement count = connection.createStatement();
+             ResultSet result = count.executeQuery("SELECT COUNT(*) FROM users")) {
+            result.next();
+            if (result.getLong(1) >= rows) {
+                return;
+            }
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO users (name, email, phone, address, created_at, updated_at, version) VALUES (?, ?, ?, ?, ?, ?, 0)")) {
+            for (int i = 0; i < rows; i++) {
+                Timestamp createdAt = Timestamp.valueOf(BASE_TIME.plusSeconds(i));
+                insert.setString(1, "Name " + i);
+                insert.setString(2, "user" + i + "@example.com");
+                insert.setString(3, String.format("+1555%07d", i));
+                insert.setString(4, i + " Main St");
+                insert.setTimestamp(5, createdAt);
+                insert.setTimestamp(6, createdAt);
+                insert.addBatch();
+                if (i % 1000 == 999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        try (Statement analyze = connection.createStatement()) {
+            analyze.execute("ANALYZE");
+        }
+    }
+
+    @Benchmark
+    public void search(Blackhole blackhole) throws SQLException {
+        try (ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                blackhole.consume(result.getLong(1));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        statement.close();
+        connection.close();
+    }
+
+    private static String inline(Query query) {
+        StringBuilder sql = new StringBuilder();
+        int parameter = 0;
+        for (char c : query.sql().toCharArray()) {
+            if (c != '?') {
+                sql.append(c);
+                continue;
+            }
+            Object value = query.parameters().get(parameter++);
+            if (value == null) {
+                sql.append("NULL");
+            } else if (value instanceof Number) {
+                sql.append(value);
+            } else if (value instanceof Timestamp timestamp) {
+                sql.append("TIMESTAMP '").append(timestamp).append('\'');
+            } else {
+                sql.append('\'').append(value.toString().replace("'", "''")).append('\'');
+            }
+        }
+        return sql.toString();
+    }
+
+    private static void bind(PreparedStatement statement, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(i + 1, parameters.get(i));
+        }
+    }
+
+    private record Query(String sql, List<Object> parameters) {
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.graphqlcrudapi.config;
+
+import org.example.graphqlcrudapi.dto.UserInput;
+import org.example.graphqlcrudapi.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @Test
+    void shouldRegisterHints() throws NoSuchMethodException {
+        new NativeRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(User.class.getMethod("getCreatedAt"))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(UserInput.class.getMethod("setEmail", String.class))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(GraphQLConfig.DateTimeCoercing.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource().forResource("graphql/schema.graphqls")).accepts(hints);
+    }
+}
@@ -2,13 +2,16 @@ package org.example.graphqlcrudapi.controller;
 
 import org.example.graphqlcrudapi.entity.User;
 import org.example.graphqlcrudapi.repository.UserRepository;
+import org.example.graphqlcrudapi.service.UserChangeLog;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.graphql.tester.AutoConfigureHttpGraphQlTester;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.graphql.test.tester.HttpGraphQlTester;
+import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.reactive.server.WebTestClient;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -20,9 +23,15 @@ class UserControllerTest {
     @Autowired
     private HttpGraphQlTester graphQlTester;
 
+    @Autowired
+    private WebTestClient webTestClient;
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserChangeLog userChangeLog;
+
     private User testUser;
 
     @BeforeEach
@@ -183,6 +192,30 @@ class UserControllerTest {
                 .hasSize(1);
     }
 
+    @Test
+    void shouldFindUsersWithFilterAndSort() {
+        userRepository.save(new User("Another Tester", "another@example.com", "+1234567891", null));
+        userRepository.save(new User("Unrelated", "unrelated@example.com", "+1234567892", null));
+        String query = """
+                query FindUsers($filter: UserFilter, $orderBy: UserOrderBy) {
+                    findUsers(filter: $filter, orderBy: $orderBy, first: 1) {
+                        users { name email }
+                        hasMore
+                        capped
+                    }
+                }
+                """;
+
+        graphQlTester.document(query)
+                .variable("filter", java.util.Map.of("email", java.util.Map.of("in",
+                        java.util.List.of("test@example.com", "another@example.com"))))
+                .variable("orderBy", java.util.Map.of("field", "EMAIL", "direction", "ASC"))
+                .execute()
+                .path("findUsers.users[*].email").entityList(String.class).containsExactly("another@example.com")
+                .path("findUsers.hasMore").entity(Boolean.class).isEqualTo(true)
+                .path("findUsers.capped").entity(Boolean.class).isEqualTo(false);
+    }
+
     @Test
     void shouldGetUserCount() {
         String query = """
@@ -244,4 +277,73 @@ class UserControllerTest {
                     assertThat(errors.get(0).getMessage()).contains("Email already exists");
                 });
     }
+
+    @Test
+    void shouldStreamSearchResultsOverSse() {
+        userRepository.save(new User("Test Two", "test2@example.com", "+1234567891", "124 Test St"));
+
+        String subscription = """
+                subscription {
+                    searchUsers(name: "Test") {
+                        id
+                        name
+                    }
+                }
+                """;
+
+        String body = webTestClient.post()
+                .uri("/graphql")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(java.util.Map.of("query", subscription))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(body).containsSubsequence("event:next", "Test User", "event:next", "Test Two", "event:complete");
+    }
+
+    @Test
+    void shouldRecordMutationsInChangeLog() throws InterruptedException {
+        long since = userChangeLog.lastSequence();
+
+        graphQlTester.document("""
+                        mutation UpdateUser($id: ID!, $input: UserInput!) {
+                            updateUser(id: $id, input: $input) { id }
+                        }
+                        """)
+                .variable("id", testUser.getId())
+                .variable("input", java.util.Map.of(
+                        "name", "Renamed User",
+                        "email", testUser.getEmail(),
+                        "phone", testUser.getPhone(),
+                        "address", testUser.getAddress()
+                ))
+                .execute()
+                .path("updateUser.id")
+                .hasValue();
+
+        String query = """
+                query Changes($since: Long) {
+                    userChanges(since: $since) {
+                        changes { op userId version changedFields }
+                    }
+                }
+                """;
+
+        // Changes reach the log asynchronously, right after the commit
+        for (int attempt = 0; attempt < 50 && userChangeLog.lastSequence() == since; attempt++) {
+            Thread.sleep(100);
+        }
+
+        graphQlTester.document(query)
+                .variable("since", since)
+                .execute()
+                .path("userChanges.changes[0]")
+                .matchesJson("""
+                        {"op": "UPDATE", "userId": "%d", "version": 1, "changedFields": ["name"]}
+                        """.formatted(testUser.getId()));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package org.example.graphqlcrudapi.execution;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CancellableStatementDataSourceTest {
+
+    private static final String ENDLESS_QUERY = "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 1000000000000) WHERE MOD(X, 7) = 8";
+
+    private final CancellableStatementDataSource dataSource = new CancellableStatementDataSource(h2());
+
+    @Test
+    void shouldCancelRunningStatementWhenBudgetIsCancelled() throws Exception {
+        ExecutionBudget budget = ExecutionBudget.start("Operation", Duration.ofMinutes(1));
+        ExecutionBudget previous = budget.bind();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS)
+                    .execute(() -> budget.cancel(ExecutionBudget.Reason.CLIENT_DISCONNECT));
+
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> statement.executeQuery(ENDLESS_QUERY)).isInstanceOf(SQLException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(10));
+        } finally {
+            ExecutionBudget.restore(previous);
+        }
+    }
+
+    @Test
+    void shouldApplyRemainingBudgetAsQueryTimeout() throws Exception {
+        ExecutionBudget budget = ExecutionBudget.start("Operation", Duration.ofMillis(1500));
+        ExecutionBudget previous = budget.bind();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            assertThatThrownBy(() -> statement.executeQuery(ENDLESS_QUERY)).isInstanceOf(SQLTimeoutException.class);
+            assertThat(statement.getQueryTimeout()).isEqualTo(2);
+        } finally {
+            ExecutionBudget.restore(previous);
+        }
+    }
+
+    @Test
+    void shouldRejectStatementsAfterBudgetRanOut() throws Exception {
+        ExecutionBudget budget = ExecutionBudget.start("Operation", Duration.ofMinutes(1))
+                .child("Field 'Query.searchUsers'", Duration.ZERO);
+        ExecutionBudget previous = budget.bind();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            assertThatThrownBy(() -> statement.executeQuery("SELECT 1"))
+                    .isInstanceOf(SQLTimeoutException.class)
+                    .hasMessage("Field 'Query.searchUsers' exceeded its time budget of 0ms");
+        } finally {
+            ExecutionBudget.restore(previous);
+        }
+    }
+
+    @Test
+    void shouldLeaveStatementsAloneWithoutBudget() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            assertThat(statement.executeQuery("SELECT 1").next()).isTrue();
+            assertThat(statement.getQueryTimeout()).isZero();
+        }
+    }
+
+    private static JdbcDataSource h2() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:cancellable;DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+}
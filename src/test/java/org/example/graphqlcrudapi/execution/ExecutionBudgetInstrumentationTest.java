@@ -0,0 +1,97 @@
+package org.example.graphqlcrudapi.execution;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.GraphQLError;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.graphqlcrudapi.config.GlobalExceptionHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.graphql.execution.DataFetcherExceptionResolver;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExecutionBudgetInstrumentationTest {
+
+    private static final String SCHEMA = """
+            type Query { slow: String, fast: String }
+            """;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ExecutionBudgetInstrumentation instrumentation = new ExecutionBudgetInstrumentation(
+            Duration.ofSeconds(5), Map.of("Query.slow", Duration.ofMillis(50)), meterRegistry);
+
+    @AfterEach
+    void close() {
+        instrumentation.close();
+    }
+
+    @Test
+    void shouldFailFieldOverItsBudgetWithTimeout() {
+        ExecutionResult result = graphQL(environment -> {
+            awaitCancellation(ExecutionBudget.current());
+            ExecutionBudget.current().check();
+            return "never";
+        }).execute("{ slow fast }");
+
+        assertThat(result.<Map<String, Object>>getData()).containsEntry("fast", "fast").containsEntry("slow", null);
+        GraphQLError error = result.getErrors().get(0);
+        assertThat(result.getErrors()).hasSize(1);
+        assertThat(error.getErrorType().toString()).isEqualTo("TIMEOUT");
+        assertThat(error.getMessage()).isEqualTo("Field 'Query.slow' exceeded its time budget of 50ms");
+        assertThat(error.getExtensions()).containsEntry("reason", "TIMEOUT");
+        assertThat(meterRegistry.get("graphql.operation.cancelled").tag("reason", "timeout").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldCountOperationsCancelledByTheRequest() {
+        ExecutionBudget request = ExecutionBudget.start("Request", null);
+        ExecutionResult result = graphQL(environment -> {
+            // What the HTTP handler does when the client goes away
+            request.cancel(ExecutionBudget.Reason.CLIENT_DISCONNECT);
+            ExecutionBudget.current().check();
+            return "never";
+        }).execute(ExecutionInput.newExecutionInput("{ slow }")
+                .graphQLContext(Map.of(ExecutionBudget.CONTEXT_KEY, request)));
+
+        assertThat(result.getErrors()).singleElement().satisfies(error -> {
+            assertThat(error.getErrorType().toString()).isEqualTo("TIMEOUT");
+            assertThat(error.getExtensions()).containsEntry("reason", "CLIENT_DISCONNECT");
+        });
+        assertThat(meterRegistry.get("graphql.operation.cancelled").tag("reason", "client_disconnect").counter().count())
+                .isEqualTo(1);
+        assertThat(ExecutionBudget.current()).isNull();
+    }
+
+    private GraphQL graphQL(DataFetcher<?> slow) {
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+                .type("Query", type -> type
+                        .dataFetcher("slow", slow)
+                        .dataFetcher("fast", environment -> "fast"))
+                .build();
+        GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), wiring);
+        return GraphQL.newGraphQL(schema)
+                .instrumentation(instrumentation)
+                .defaultDataFetcherExceptionHandler(
+                        DataFetcherExceptionResolver.createExceptionHandler(List.of(new GlobalExceptionHandler())))
+                .build();
+    }
+
+    private static void awaitCancellation(ExecutionBudget budget) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (budget.cancelReason() == null && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.example.graphqlcrudapi.monitoring;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.GraphQL;
+import graphql.execution.instrumentation.ChainedInstrumentation;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GraphQlRequestLogInstrumentationTest {
+
+    private static final String SCHEMA = """
+            type Query { fast: String, slow: String, broken: String }
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Logger requestLog = (Logger) LoggerFactory.getLogger("graphql.requests");
+
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    void attachAppender() {
+        appender.start();
+        requestLog.addAppender(appender);
+    }
+
+    @AfterEach
+    void detachAppender() {
+        requestLog.detachAppender(appender);
+    }
+
+    @Test
+    void shouldLogOnlySlowAndFailedOperationsWithoutHeadSampling() throws Exception {
+        GraphQlRequestLogInstrumentation instrumentation = new GraphQlRequestLogInstrumentation(
+                0, Duration.ofMillis(50), 16, new SimpleMeterRegistry());
+        GraphQL graphQL = graphQL(instrumentation);
+
+        graphQL.execute("query Fast { fast }");
+        graphQL.execute("query Slow { slow }");
+        graphQL.execute("{ broken }");
+        instrumentation.close();
+
+        List<Map<String, Object>> records = records();
+        assertThat(records).extracting(record -> record.get("sampled")).containsExactly("slow", "error");
+        assertThat(records.get(0))
+                .containsEntry("operation", "Slow")
+                .containsEntry("type", "query")
+                .containsEntry("statements", 2)
+                .containsEntry("errors", List.of());
+        assertThat((Double) records.get(0).get("durationMs")).isGreaterThanOrEqualTo(50);
+        assertThat(records.get(1))
+                .containsEntry("operation", "anonymous")
+                .containsEntry("errors", List.of("DataFetchingException"))
+                .containsEntry("statements", 0);
+    }
+
+    @Test
+    void shouldLogHeadSampledOperationsWithTheirDocumentHash() throws Exception {
+        GraphQlRequestLogInstrumentation instrumentation = new GraphQlRequestLogInstrumentation(
+                1, Duration.ofMinutes(1), 16, null);
+        GraphQL graphQL = graphQL(instrumentation);
+
+        graphQL.execute("query Fast { fast }");
+        graphQL.execute("query Fast { fast }");
+        graphQL.execute("query Other { fast }");
+        instrumentation.close();
+
+        List<Map<String, Object>> records = records();
+        assertThat(records).extracting(record -> record.get("sampled")).containsOnly("head");
+        assertThat(records).extracting(record -> record.get("operation")).containsExactly("Fast", "Fast", "Other");
+        assertThat((String) records.get(0).get("hash")).matches("[0-9a-f]{16}");
+        assertThat(records.get(1).get("hash")).isEqualTo(records.get(0).get("hash"));
+        assertThat(records.get(2).get("hash")).isNotEqualTo(records.get(0).get("hash"));
+    }
+
+    private List<Map<String, Object>> records() throws Exception {
+        TypeReference<Map<String, Object>> type = new TypeReference<>() {
+        };
+        List<Map<String, Object>> records = new ArrayList<>();
+        for (ILoggingEvent event : appender.list) {
+            records.add(objectMapper.readValue(event.getFormattedMessage(), type));
+        }
+        return records;
+    }
+
+    private static GraphQL graphQL(GraphQlRequestLogInstrumentation instrumentation) {
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+                .type("Query", type -> type
+                        .dataFetcher("fast", env -> "fast")
+                        .dataFetcher("slow", env -> {
+                            SqlStatementStats.statementPrepared("select * from users");
+                            SqlStatementStats.statementPrepared("select * from orders");
+                            Thread.sleep(60);
+                            return "slow";
+                        })
+                        .dataFetcher("broken", env -> {
+                            throw new IllegalStateException("broken");
+                        }))
+                .build();
+        GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), wiring);
+        return GraphQL.newGraphQL(schema)
+                .instrumentation(new ChainedInstrumentation(
+                        new SqlStatisticsInstrumentation(new SimpleMeterRegistry(), 10, false), instrumentation))
+                .build();
+    }
+}
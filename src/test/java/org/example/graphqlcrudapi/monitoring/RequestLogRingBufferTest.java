@@ -0,0 +1,71 @@
+package org.example.graphqlcrudapi.monitoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestLogRingBufferTest {
+
+    @Test
+    void shouldDropInsteadOfBlockingWhenFull() {
+        RequestLogRingBuffer<Integer> buffer = new RequestLogRingBuffer<>(3);
+
+        for (int i = 0; i < 6; i++) {
+            buffer.offer(i);
+        }
+
+        assertThat(buffer.capacity()).isEqualTo(4);
+        assertThat(buffer.dropped()).isEqualTo(2);
+        List<Integer> polled = new ArrayList<>();
+        for (Integer next = buffer.poll(); next != null; next = buffer.poll()) {
+            polled.add(next);
+        }
+        assertThat(polled).containsExactly(0, 1, 2, 3);
+        assertThat(buffer.offer(6)).isTrue();
+        assertThat(buffer.poll()).isEqualTo(6);
+    }
+
+    @Test
+    void shouldDeliverEveryAcceptedElementFromConcurrentProducers() throws Exception {
+        RequestLogRingBuffer<Integer> buffer = new RequestLogRingBuffer<>(64);
+        int producers = 8;
+        int perProducer = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch done = new CountDownLatch(producers);
+        Set<Integer> accepted = ConcurrentHashMap.newKeySet();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            executor.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    if (buffer.offer(base + i)) {
+                        accepted.add(base + i);
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        Set<Integer> polled = new HashSet<>();
+        while (done.getCount() > 0 || polled.size() < accepted.size()) {
+            Integer next = buffer.poll();
+            if (next != null) {
+                assertThat(polled.add(next)).isTrue();
+            }
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(polled).isEqualTo(accepted);
+        assertThat(polled.size() + buffer.dropped()).isEqualTo((long) producers * perProducer);
+    }
+}
@@ -0,0 +1,124 @@
+package org.example.graphqlcrudapi.monitoring;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlStatisticsInstrumentationTest {
+
+    private static final String SCHEMA = """
+            type Query { users: [User] }
+            type User { id: ID, orderCount: Int }
+            """;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldAttributeStatementsToFieldsAndFlagNPlusOne() {
+        ExecutionResult result = graphQL().execute("query Users { users { id orderCount } }");
+
+        assertThat(result.getErrors()).isEmpty();
+        Map<String, Object> sql = (Map<String, Object>) result.getExtensions().get("sql");
+        assertThat(sql).containsEntry("statements", 13L).containsEntry("rows", 12L);
+        Map<String, Map<String, Object>> fields = (Map<String, Map<String, Object>>) sql.get("fields");
+        assertThat(fields.get("users")).containsEntry("statements", 1L);
+        assertThat(fields.get("users/orderCount")).containsEntry("statements", 12L);
+        List<Map<String, Object>> nPlusOne = (List<Map<String, Object>>) sql.get("nPlusOne");
+        assertThat(nPlusOne).singleElement().satisfies(statement -> {
+            assertThat(statement).containsEntry("field", "users/orderCount").containsEntry("count", 12L);
+        });
+
+        assertThat(meterRegistry.get("graphql.sql.statements").tag("root", "users").summary().totalAmount()).isEqualTo(13);
+        assertThat(meterRegistry.get("graphql.sql.n_plus_one").tag("field", "User.orderCount").counter().count()).isEqualTo(1);
+        assertThat(SqlStatementStats.isRecording()).isFalse();
+    }
+
+    @Test
+    void shouldTagMetricsWithSchemaNamesOnly() {
+        GraphQL graphQL = graphQL();
+        for (int i = 0; i < 3; i++) {
+            graphQL.execute("query Random" + i + " { alias" + i + ": users { orders" + i + ": orderCount } }");
+        }
+        graphQL.execute("{ users { id } again: users { id } }");
+
+        assertThat(meterRegistry.get("graphql.sql.statements").summaries())
+                .extracting(summary -> summary.getId().getTag("root"))
+                .containsExactlyInAnyOrder("users");
+        assertThat(meterRegistry.get("graphql.sql.statements").tag("root", "users").summary().count()).isEqualTo(4);
+        assertThat(meterRegistry.get("graphql.sql.n_plus_one").counters())
+                .extracting(counter -> counter.getId().getTag("field"))
+                .containsExactly("User.orderCount");
+    }
+
+    @Test
+    void shouldUnbindOnBindingThreadWhenCompletedElsewhere() {
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+                .type("Query", type -> type.dataFetcher("users", env -> CompletableFuture.supplyAsync(List::of)))
+                .build();
+        GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), wiring);
+        GraphQL graphQL = GraphQL.newGraphQL(schema)
+                .instrumentation(new SqlStatisticsInstrumentation(meterRegistry, 10, false))
+                .build();
+
+        graphQL.executeAsync(ExecutionInput.newExecutionInput("{ users { id } }").build()).join();
+
+        assertThat(SqlStatementStats.isRecording()).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldCountStatementsOfPropagatedWork() {
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+                .type("Query", type -> type.dataFetcher("users", env -> CompletableFuture.supplyAsync(
+                        SqlStatementStats.propagate(() -> {
+                            // As a shard query run on the scatter pool
+                            SqlStatementStats.statementPrepared("select * from users");
+                            SqlStatementStats.rowsLoaded(2);
+                            return SqlStatementStats.isRecording() ? List.of(Map.of("id", 1), Map.of("id", 2)) : List.of();
+                        })).join()))
+                .build();
+        GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), wiring);
+        GraphQL graphQL = GraphQL.newGraphQL(schema)
+                .instrumentation(new SqlStatisticsInstrumentation(meterRegistry, 10, true))
+                .build();
+
+        ExecutionResult result = graphQL.execute("{ users { id } }");
+
+        Map<String, Object> sql = (Map<String, Object>) result.getExtensions().get("sql");
+        assertThat(sql).containsEntry("statements", 1L).containsEntry("rows", 2L);
+        assertThat((Map<String, Map<String, Object>>) sql.get("fields")).containsKey("users");
+        assertThat(CompletableFuture.supplyAsync(SqlStatementStats::isRecording).join()).isFalse();
+    }
+
+    private GraphQL graphQL() {
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+                .type("Query", type -> type.dataFetcher("users", env -> {
+                    SqlStatementStats.statementPrepared("select * from users");
+                    SqlStatementStats.rowsLoaded(12);
+                    return IntStream.range(0, 12).mapToObj(id -> Map.of("id", id)).toList();
+                }))
+                .type("User", type -> type.dataFetcher("orderCount", env -> {
+                    SqlStatementStats.statementPrepared("select count(*) from orders where user_id=?");
+                    return 0;
+                }))
+                .build();
+        GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), wiring);
+        return GraphQL.newGraphQL(schema)
+                .instrumentation(new SqlStatisticsInstrumentation(meterRegistry, 10, true))
+                .build();
+    }
+}
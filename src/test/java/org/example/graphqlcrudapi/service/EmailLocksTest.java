@@ -0,0 +1,52 @@
+package org.example.graphqlcrudapi.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmailLocksTest {
+
+    private final EmailLocks locks = new EmailLocks(1000);
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void shouldHoldLockUntilTransactionCompletes() {
+        TransactionSynchronizationManager.initSynchronization();
+        locks.lockUntilCompletion("Same@Example.com");
+
+        assertThat(lockedElsewhere(" same@example.com")).isTrue();
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertThat(lockedElsewhere("same@example.com")).isFalse();
+    }
+
+    @Test
+    void shouldRequireTransaction() {
+        assertThatThrownBy(() -> locks.lockUntilCompletion("user@example.com"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private boolean lockedElsewhere(String email) {
+        return CompletableFuture.supplyAsync(() -> {
+            boolean acquired = locks.stripeFor(email).tryLock();
+            if (acquired) {
+                locks.stripeFor(email).unlock();
+            }
+            return !acquired;
+        }).join();
+    }
+}
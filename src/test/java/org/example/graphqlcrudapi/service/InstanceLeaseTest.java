@@ -0,0 +1,81 @@
+package org.example.graphqlcrudapi.service;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InstanceLeaseTest {
+
+    private static final Duration TTL = Duration.ofMillis(300);
+
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(h2());
+
+    @BeforeEach
+    void createTable() {
+        jdbcTemplate.execute("CREATE TABLE instance_lease (name VARCHAR(64) NOT NULL PRIMARY KEY, "
+                + "holder VARCHAR(36) NOT NULL, expires_at BIGINT NOT NULL)");
+    }
+
+    @AfterEach
+    void dropTable() {
+        jdbcTemplate.execute("DROP TABLE instance_lease");
+    }
+
+    @Test
+    void shouldRefuseSecondInstanceWhileTheFirstHoldsTheLease() throws Exception {
+        try (InstanceLease first = InstanceLease.acquire("feed", jdbcTemplate, TTL, () -> {
+        })) {
+            assertThatThrownBy(() -> InstanceLease.acquire("feed", jdbcTemplate, TTL, () -> {
+            }))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("Another instance holds 'feed'");
+            assertThat(first.isHeld()).isTrue();
+        }
+
+        try (InstanceLease replacement = InstanceLease.acquire("feed", jdbcTemplate, TTL, () -> {
+        })) {
+            assertThat(replacement.isHeld()).isTrue();
+        }
+    }
+
+    @Test
+    void shouldTakeOverLeaseLeftByACrashedInstance() throws Exception {
+        jdbcTemplate.update("INSERT INTO instance_lease (name, holder, expires_at) VALUES (?, ?, ?)",
+                "feed", "crashed", System.currentTimeMillis() + 100);
+
+        try (InstanceLease lease = InstanceLease.acquire("feed", jdbcTemplate, TTL, () -> {
+        })) {
+            assertThat(lease.isHeld()).isTrue();
+            assertThat(jdbcTemplate.queryForObject("SELECT holder FROM instance_lease", String.class))
+                    .isNotEqualTo("crashed");
+        }
+    }
+
+    @Test
+    void shouldGiveUpLeaseTakenByAnotherInstance() throws Exception {
+        CountDownLatch lost = new CountDownLatch(1);
+        try (InstanceLease lease = InstanceLease.acquire("feed", jdbcTemplate, TTL, lost::countDown)) {
+            // What another instance does once this one's claim has expired during a pause
+            jdbcTemplate.update("UPDATE instance_lease SET holder = 'other'");
+
+            assertThat(lost.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(lease.isHeld()).isFalse();
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT holder FROM instance_lease", String.class)).isEqualTo("other");
+    }
+
+    private static JdbcDataSource h2() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:lease;DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+}
@@ -0,0 +1,139 @@
+package org.example.graphqlcrudapi.service;
+
+import org.example.graphqlcrudapi.dto.UserInput;
+import org.example.graphqlcrudapi.entity.User;
+import org.example.graphqlcrudapi.execution.ExecutionBudget;
+import org.example.graphqlcrudapi.exception.DuplicateEmailException;
+import org.example.graphqlcrudapi.repository.sharding.EmailShardDirectory;
+import org.example.graphqlcrudapi.repository.sharding.ShardRouter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "app.sharding.enabled=true",
+        "app.sharding.shards[0].url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+        "app.sharding.shards[0].username=sa",
+        "app.sharding.shards[1].url=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1",
+        "app.sharding.shards[1].username=sa",
+        "app.sharding.shards[2].url=jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1",
+        "app.sharding.shards[2].username=sa",
+        "app.changelog.directory=${java.io.tmpdir}/graphql-crud-api-test/sharded-changelog"
+})
+class ShardedUserServiceTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private EmailShardDirectory emailShardDirectory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldSpreadUsersOverShardsAndRouteById() {
+        List<User> created = List.of(
+                userService.createUser(new UserInput("Shard One", "shard.one@example.com", "+1000000001", null)),
+                userService.createUser(new UserInput("Shard Two", "shard.two@example.com", "+1000000002", null)),
+                userService.createUser(new UserInput("Shard Three", "shard.three@example.com", "+1000000003", null)));
+
+        assertThat(created).extracting(user -> shardRouter.shardFor(user.getId())).containsExactlyInAnyOrder(0, 1, 2);
+        for (User user : created) {
+            assertThat(countOnShard(shardRouter.shardFor(user.getId()), user.getId())).isEqualTo(1);
+            assertThat(userService.getUserById(user.getId()).getEmail()).isEqualTo(user.getEmail());
+        }
+    }
+
+    @Test
+    void shouldMergeSearchesAndCountsAcrossShards() {
+        long before = userService.getUserCount();
+        for (int i = 0; i < 6; i++) {
+            userService.createUser(new UserInput("Merge " + i, "merge" + i + "@example.com", "+2000000000", null));
+        }
+
+        List<User> found = userService.searchUsers("Merge", null, null);
+        assertThat(found).hasSize(6).isSortedAccordingTo((a, b) -> Long.compare(a.getId(), b.getId()));
+        assertThat(userService.getUserCount()).isEqualTo(before + 6);
+
+        List<User> firstPage = userService.searchUsersAfter("Merge", null, null, 0, 4);
+        List<User> secondPage = userService.searchUsersAfter("Merge", null, null, firstPage.get(3).getId(), 4);
+        assertThat(firstPage).hasSize(4);
+        assertThat(secondPage).hasSize(2);
+        assertThat(secondPage.get(0).getId()).isGreaterThan(firstPage.get(3).getId());
+    }
+
+    @Test
+    void shouldKeepEmailsUniqueAcrossShards() {
+        User user = userService.createUser(new UserInput("Unique", "unique@example.com", null, null));
+
+        assertThat(userService.emailExists("unique@example.com")).isTrue();
+        assertThat(userService.getUserByEmail("unique@example.com")).map(User::getId).contains(user.getId());
+        assertThatThrownBy(() -> userService.createUser(new UserInput("Again", "unique@example.com", null, null)))
+                .isInstanceOf(DuplicateEmailException.class);
+
+        userService.updateUser(user.getId(), new UserInput("Unique", "renamed@example.com", null, null));
+        assertThat(userService.emailExists("unique@example.com")).isFalse();
+
+        userService.deleteUser(user.getId());
+        assertThat(userService.emailExists("renamed@example.com")).isFalse();
+    }
+
+    @Test
+    void shouldReclaimEmailEntriesLeftWithoutUser() {
+        JdbcTemplate directory = new JdbcTemplate(shardRouter.shardDataSource(0));
+        // As left by a crash after reserving, long ago, and by one that is still in flight
+        directory.update("INSERT INTO user_email_shard (email, shard, reserved_at) VALUES (?, ?, ?)", "crashed@example.com", 1, 0L);
+        directory.update("INSERT INTO user_email_shard (email, shard, reserved_at) VALUES (?, ?, ?)", "orphan@example.com", 2, 0L);
+        directory.update("INSERT INTO user_email_shard (email, shard, reserved_at) VALUES (?, ?, ?)", "in-flight@example.com", 2,
+                System.currentTimeMillis());
+
+        User user = userService.createUser(new UserInput("Crashed", "crashed@example.com", null, null));
+        assertThat(userService.getUserByEmail("crashed@example.com")).map(User::getId).contains(user.getId());
+        assertThatThrownBy(() -> userService.createUser(new UserInput("In Flight", "in-flight@example.com", null, null)))
+                .isInstanceOf(DuplicateEmailException.class);
+
+        assertThat(emailShardDirectory.reconcile()).isEqualTo(1);
+        assertThat(userService.emailExists("orphan@example.com")).isFalse();
+        assertThat(userService.emailExists("crashed@example.com")).isTrue();
+        assertThat(userService.emailExists("in-flight@example.com")).isTrue();
+    }
+
+    @Test
+    void shouldCancelScatteredQueriesWithTheCallersBudget() {
+        ExecutionBudget budget = ExecutionBudget.start("Operation", Duration.ofMillis(500));
+        ExecutionBudget previous = budget.bind();
+        long start = System.nanoTime();
+        try {
+            // Runs for hours unless the shard statements get the budget's timeout
+            assertThatThrownBy(() -> shardRouter.scatter(() -> jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 1000000000000) WHERE MOD(X, 7) = 8", Long.class)))
+                    .isInstanceOf(CompletionException.class);
+        } finally {
+            ExecutionBudget.restore(previous);
+        }
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(10));
+        assertThat(budget.cancelReason()).isEqualTo(ExecutionBudget.Reason.TIMEOUT);
+    }
+
+    @Test
+    void shouldNotPinOutsideTransaction() {
+        assertThatThrownBy(() -> shardRouter.pin(1)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private int countOnShard(int shard, long id) {
+        return new JdbcTemplate(shardRouter.shardDataSource(shard))
+                .queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Integer.class, id);
+    }
+}
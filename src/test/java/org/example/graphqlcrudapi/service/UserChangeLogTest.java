@@ -0,0 +1,133 @@
+package org.example.graphqlcrudapi.service;
+
+import org.example.graphqlcrudapi.dto.UserChange;
+import org.example.graphqlcrudapi.dto.UserChangePage;
+import org.example.graphqlcrudapi.entity.UserChangeOp;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserChangeLogTest {
+
+    private static final int RECORDS_PER_SEGMENT = 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldReadChangesAfterCursor() {
+        try (UserChangeLog log = open(10)) {
+            assertThat(log.append(changes(1, 6))).isEqualTo(6);
+
+            UserChangePage page = log.read(2, 3);
+
+            assertThat(page.getChanges()).extracting(UserChange::getSequence).containsExactly(3L, 4L, 5L);
+            assertThat(page.getChanges()).extracting(UserChange::getUserId).containsExactly(3L, 4L, 5L);
+            assertThat(page.getChanges().get(0).getOp()).isEqualTo(UserChangeOp.UPDATE);
+            assertThat(page.getChanges().get(0).getChangedFields()).containsExactly("name", "phone");
+            assertThat(page.getNextCursor()).isEqualTo(5);
+            assertThat(page.isTruncated()).isFalse();
+            assertThat(log.read(6, 10).getChanges()).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldRecoverSequenceAfterReopen() {
+        try (UserChangeLog log = open(10)) {
+            log.append(changes(1, 6));
+        }
+
+        try (UserChangeLog log = open(10)) {
+            assertThat(log.lastSequence()).isEqualTo(6);
+            assertThat(log.append(changes(7, 7))).isEqualTo(7);
+
+            List<UserChange> replayed = new ArrayList<>();
+            log.replay(0, replayed::add);
+            assertThat(replayed).extracting(UserChange::getSequence).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L);
+        }
+    }
+
+    @Test
+    void shouldDropOldestSegmentsBeyondRetention() throws IOException {
+        try (UserChangeLog log = open(2)) {
+            log.append(changes(1, 10));
+
+            assertThat(segmentCount()).isEqualTo(2);
+            assertThat(log.firstSequence()).isEqualTo(5);
+
+            UserChangePage page = log.read(0, 100);
+            assertThat(page.isTruncated()).isTrue();
+            assertThat(page.getChanges()).extracting(UserChange::getSequence).containsExactly(5L, 6L, 7L, 8L, 9L, 10L);
+        }
+    }
+
+    @Test
+    void shouldEmptyLogWrittenForAnotherDatabase() {
+        try (UserChangeLog log = open(10)) {
+            assertThat(log.bindTo("db-1")).isFalse();
+            log.append(changes(1, 6));
+        }
+
+        try (UserChangeLog log = open(10)) {
+            assertThat(log.bindTo("db-1")).isFalse();
+            assertThat(log.lastSequence()).isEqualTo(6);
+        }
+
+        try (UserChangeLog log = open(10)) {
+            assertThat(log.bindTo("db-2")).isTrue();
+            assertThat(log.read(0, 100).getChanges()).isEmpty();
+            assertThat(log.append(changes(1, 1))).isEqualTo(7);
+
+            UserChangePage page = log.read(3, 100);
+            assertThat(page.isTruncated()).isTrue();
+            assertThat(page.getChanges()).extracting(UserChange::getSequence).containsExactly(7L);
+        }
+    }
+
+    @Test
+    void shouldRefuseToOpenWithCorruptEarlierSegment() throws IOException {
+        try (UserChangeLog log = open(10)) {
+            log.append(changes(1, 6));
+        }
+        Path first;
+        try (Stream<Path> files = Files.list(directory)) {
+            first = files.filter(file -> file.toString().endsWith(".log")).sorted().findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(first, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {42}), UserChangeLog.RECORD_SIZE + 10);
+        }
+
+        assertThatThrownBy(() -> open(10))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("corrupt at sequence 2");
+    }
+
+    private UserChangeLog open(int retainedSegments) {
+        return new UserChangeLog(directory, (long) RECORDS_PER_SEGMENT * UserChangeLog.RECORD_SIZE, retainedSegments, false);
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static List<UserChange> changes(long fromUserId, long toUserId) {
+        return LongStream.rangeClosed(fromUserId, toUserId)
+                .mapToObj(id -> new UserChange(0, UserChangeOp.UPDATE, id, 1, UserChange.NAME | UserChange.PHONE, 1_700_000_000_000L))
+                .toList();
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.graphqlcrudapi.service;
+
+import org.example.graphqlcrudapi.dto.DateTimeRange;
+import org.example.graphqlcrudapi.dto.StringFilter;
+import org.example.graphqlcrudapi.dto.UserFilter;
+import org.example.graphqlcrudapi.dto.UserOrderBy;
+import org.example.graphqlcrudapi.exception.UnboundedQueryException;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserQueryPlannerTest {
+
+    private final UserQueryPlanner h2Planner = new UserQueryPlanner(false, 100, 1000, 50, 10, UserQueryPlanner.UnindexedPolicy.CAP);
+
+    @Test
+    void shouldUseIndexesForKeyAndRangePredicates() {
+        UserFilter byEmail = new UserFilter();
+        byEmail.setEmail(stringFilter(filter -> filter.setIn(List.of("a@example.com", "b@example.com"))));
+        assertThat(h2Planner.plan(byEmail, null, 500).access()).isEqualTo(UserQueryPlanner.Access.INDEX_LOOKUP);
+
+        UserFilter byCreatedAt = new UserFilter();
+        DateTimeRange range = new DateTimeRange();
+        range.setFrom(LocalDateTime.of(2024, 1, 1, 0, 0));
+        range.setTo(LocalDateTime.of(2024, 2, 1, 0, 0));
+        byCreatedAt.setCreatedAt(range);
+        byCreatedAt.setName(stringFilter(filter -> filter.setContains("ann")));
+        UserQueryPlanner.Plan plan = h2Planner.plan(byCreatedAt, new UserOrderBy(UserOrderBy.Field.CREATED_AT, UserOrderBy.Direction.DESC), 500);
+        assertThat(plan.access()).isEqualTo(UserQueryPlanner.Access.INDEX_LOOKUP);
+        assertThat(plan.limit()).isEqualTo(500);
+        assertThat(plan.sort()).isEqualTo(Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "id")));
+    }
+
+    @Test
+    void shouldScanIndexInOrderWithoutFilter() {
+        UserQueryPlanner.Plan plan = h2Planner.plan(null, new UserOrderBy(UserOrderBy.Field.EMAIL, UserOrderBy.Direction.ASC), 5000);
+
+        assertThat(plan.access()).isEqualTo(UserQueryPlanner.Access.INDEX_SCAN);
+        assertThat(plan.limit()).isEqualTo(1000);
+        assertThat(plan.capped()).isFalse();
+    }
+
+    @Test
+    void shouldCapOrRejectFullScans() {
+        UserFilter byName = new UserFilter();
+        byName.setName(stringFilter(filter -> filter.setContains("ann")));
+
+        UserQueryPlanner.Plan capped = h2Planner.plan(byName, null, 500);
+        assertThat(capped.access()).isEqualTo(UserQueryPlanner.Access.FULL_SCAN);
+        assertThat(capped.limit()).isEqualTo(50);
+        assertThat(capped.capped()).isTrue();
+
+        UserQueryPlanner postgresPlanner = new UserQueryPlanner(true, 100, 1000, 50, 10, UserQueryPlanner.UnindexedPolicy.REJECT);
+        assertThat(postgresPlanner.plan(byName, null, 500).access()).isEqualTo(UserQueryPlanner.Access.INDEX_LOOKUP);
+        assertThatThrownBy(() -> postgresPlanner.plan(null, new UserOrderBy(UserOrderBy.Field.NAME, UserOrderBy.Direction.ASC), 10))
+                .isInstanceOf(UnboundedQueryException.class);
+    }
+
+    @Test
+    void shouldNotCountUnselectivePredicatesAsIndexed() {
+        UserQueryPlanner postgresPlanner = new UserQueryPlanner(true, 100, 1000, 50, 10, UserQueryPlanner.UnindexedPolicy.CAP);
+        UserOrderBy byName = new UserOrderBy(UserOrderBy.Field.NAME, UserOrderBy.Direction.ASC);
+
+        UserFilter after = new UserFilter();
+        DateTimeRange from = new DateTimeRange();
+        from.setFrom(LocalDateTime.of(2024, 1, 1, 0, 0));
+        after.setCreatedAt(from);
+        assertThat(postgresPlanner.plan(after, byName, 500).access()).isEqualTo(UserQueryPlanner.Access.FULL_SCAN);
+        // Read in (created_at, id) order, every row from the bound on matches
+        UserQueryPlanner.Plan keyset = postgresPlanner.plan(after, new UserOrderBy(UserOrderBy.Field.CREATED_AT, UserOrderBy.Direction.ASC), 500);
+        assertThat(keyset.access()).isEqualTo(UserQueryPlanner.Access.INDEX_SCAN);
+        assertThat(keyset.limit()).isEqualTo(500);
+
+        UserFilter shortPattern = new UserFilter();
+        shortPattern.setName(stringFilter(filter -> filter.setPrefix("an")));
+        shortPattern.setEmail(stringFilter(filter -> filter.setContains("")));
+        assertThat(postgresPlanner.plan(shortPattern, byName, 500).access()).isEqualTo(UserQueryPlanner.Access.FULL_SCAN);
+
+        UserFilter emptyIn = new UserFilter();
+        emptyIn.setIds(List.of());
+        emptyIn.setEmail(stringFilter(filter -> filter.setIn(List.of())));
+        assertThat(postgresPlanner.plan(emptyIn, byName, 500).capped()).isTrue();
+    }
+
+    private static StringFilter stringFilter(Consumer<StringFilter> customizer) {
+        StringFilter filter = new StringFilter();
+        customizer.accept(filter);
+        return filter;
+    }
+}
@@ -0,0 +1,142 @@
+package org.example.graphqlcrudapi.service;
+
+import org.example.graphqlcrudapi.entity.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserReadModelTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 1, 15, 10, 30);
+
+    private final UserReadModel model = new UserReadModel(16, false);
+
+    @Test
+    void shouldKeepUsersOrderedAndOnlyMoveToNewerVersions() {
+        model.upsert(user(3, "Carol", "carol@example.com", 0));
+        model.upsert(user(1, "Alice", "alice@example.com", 0));
+        model.upsert(user(2, "Bob", "bob@example.com", 0));
+
+        model.upsert(user(2, "Bobby", "bob@example.com", 2));
+        model.upsert(user(2, "Bob Stale", "bob@example.com", 1));
+
+        assertThat(model.findAll()).extracting(User::getId).containsExactly(1L, 2L, 3L);
+        User bob = model.findById(2).orElseThrow();
+        assertThat(bob.getName()).isEqualTo("Bobby");
+        assertThat(bob.getVersion()).isEqualTo(2);
+        assertThat(bob.getCreatedAt()).isEqualTo(CREATED);
+        assertThat(bob.getPhone()).isNull();
+        assertThat(model.findByEmail("carol@example.com")).map(User::getId).contains(3L);
+    }
+
+    @Test
+    void shouldNotResurrectDeletedUsers() {
+        model.upsert(user(1, "Alice", "alice@example.com", 0));
+        model.remove(1);
+        model.upsert(user(1, "Alice Late", "alice@example.com", 5));
+        // Deleted before the initial load reached it
+        model.remove(2);
+        model.upsert(user(2, "Bob", "bob@example.com", 0));
+
+        assertThat(model.findById(1)).isEmpty();
+        assertThat(model.findByEmail("alice@example.com")).isEmpty();
+        assertThat(model.findAll()).isEmpty();
+        assertThat(model.size()).isZero();
+    }
+
+    @Test
+    void shouldSearchLikeTheRepository() {
+        model.upsert(user(1, "John Doe", "john.doe@example.com", 0));
+        model.upsert(user(2, "Jane Doe", "jane@example.org", 0));
+        model.upsert(user(3, "Johnny", "johnny@example.com", 0));
+
+        assertThat(model.search("DOE", null, null, Long.MIN_VALUE, 10)).extracting(User::getId).containsExactly(1L, 2L);
+        assertThat(model.search("john", "EXAMPLE.COM", null, Long.MIN_VALUE, 10)).extracting(User::getId).containsExactly(1L, 3L);
+        assertThat(model.search(null, "example", null, 1, 1)).extracting(User::getId).containsExactly(2L);
+        assertThat(model.search(null, null, "+1", Long.MIN_VALUE, 10)).isEmpty();
+    }
+
+    @Test
+    void shouldFindUsersByTheirCurrentEmail() {
+        model.upsert(user(1, "Alice", "alice@example.com", 0));
+        model.upsert(user(2, "Bob", "bob@example.com", 0));
+        model.upsert(user(1, "Alice", "alice.new@example.com", 1));
+
+        assertThat(model.findByEmail("alice@example.com")).isEmpty();
+        assertThat(model.findByEmail("alice.new@example.com")).map(User::getId).contains(1L);
+        assertThat(model.findByEmail("bob@example.com")).map(User::getId).contains(2L);
+
+        // Inserted before the existing rows, which shifts them
+        model.upsert(user(0, "Dave", "alice@example.com", 0));
+        model.remove(2);
+        assertThat(model.findByEmail("bob@example.com")).isEmpty();
+        assertThat(model.findByEmail("alice.new@example.com")).map(User::getId).contains(1L);
+        assertThat(model.findByEmail("alice@example.com")).map(User::getId).contains(0L);
+    }
+
+    @Test
+    void shouldKeepMillisecondPrecision() {
+        User alice = user(1, "Alice", "alice@example.com", 0);
+        alice.setUpdatedAt(CREATED.plusNanos(123_456_789));
+        model.upsert(alice);
+
+        assertThat(model.findById(1).orElseThrow().getUpdatedAt()).isEqualTo(CREATED.plusNanos(123_000_000));
+    }
+
+    @Test
+    void shouldReleaseStringsNoRowUses() {
+        UserReadModel.StringDictionary strings = new UserReadModel.StringDictionary(16, false);
+        int kept = strings.encode("kept");
+        for (int i = 0; i < 10_000; i++) {
+            strings.release(strings.encode("value " + i));
+        }
+        long memory = strings.memoryBytes();
+        for (int i = 0; i < 10_000; i++) {
+            strings.release(strings.encode("other value " + i));
+        }
+
+        assertThat(strings.size()).isEqualTo(1);
+        assertThat(strings.memoryBytes()).isEqualTo(memory);
+        assertThat(strings.decode(kept)).isEqualTo("kept");
+        assertThat(strings.find("value 1")).isEqualTo(-1);
+
+        model.upsert(user(1, "Alice", "alice@example.com", 0));
+        model.upsert(user(1, "Alicia", "alicia@example.com", 1));
+        model.remove(1);
+        assertThat(model.search("Ali", null, null, Long.MIN_VALUE, 10)).isEmpty();
+    }
+
+    @Test
+    void shouldNotServeReadsOnceRetired() {
+        model.markReady();
+        assertThat(model.isReady()).isTrue();
+
+        model.retire();
+        // A load finishing after the lease was lost must not bring it back
+        model.markReady();
+
+        assertThat(model.isReady()).isFalse();
+    }
+
+    @Test
+    void shouldStayFarBelowEntityFootprint() {
+        UserReadModel large = new UserReadModel(16, true);
+        for (int i = 1; i <= 10_000; i++) {
+            large.upsert(user(i, "User " + (i % 100), "user" + i + "@example.com", 0));
+        }
+
+        // Columns plus the distinct emails; names repeat and are stored once
+        assertThat(large.memoryBytes() / 10_000).isLessThan(160);
+    }
+
+    private static User user(long id, String name, String email, long version) {
+        User user = new User(name, email, null, null);
+        user.setId(id);
+        user.setVersion(version);
+        user.setCreatedAt(CREATED);
+        user.setUpdatedAt(CREATED);
+        return user;
+    }
+}
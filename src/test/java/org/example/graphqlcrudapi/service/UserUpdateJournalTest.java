@@ -0,0 +1,65 @@
+package org.example.graphqlcrudapi.service;
+
+import org.example.graphqlcrudapi.dto.UserInput;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class UserUpdateJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldRecoverEntriesLeftByPreviousRun() {
+        try (UserUpdateJournal journal = new UserUpdateJournal(directory)) {
+            journal.sync(journal.append(new UserUpdateJournal.Entry(1, 100, new UserInput("One", "one@example.com", null, "Street 1"))));
+            journal.roll();
+            journal.append(new UserUpdateJournal.Entry(2, 200, new UserInput("Two", "two@example.com", "+1000000002", null)));
+            journal.sync(journal.append(new UserUpdateJournal.Entry(1, 300, null)));
+        }
+
+        try (UserUpdateJournal journal = new UserUpdateJournal(directory)) {
+            assertThat(journal.recover())
+                    .extracting(UserUpdateJournal.Entry::userId, UserUpdateJournal.Entry::acceptedAt)
+                    .containsExactly(
+                            tuple(1L, 100L),
+                            tuple(2L, 200L),
+                            tuple(1L, 300L));
+            assertThat(journal.recover().get(1).input().getPhone()).isEqualTo("+1000000002");
+            assertThat(journal.recover().get(2).input()).isNull();
+        }
+    }
+
+    @Test
+    void shouldStopAtTornRecordAndDeleteFlushedGenerations() throws IOException {
+        try (UserUpdateJournal journal = new UserUpdateJournal(directory)) {
+            journal.sync(journal.append(new UserUpdateJournal.Entry(1, 100, new UserInput("One", "one@example.com", null, null))));
+        }
+        Path file = journalFiles().findFirst().orElseThrow();
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (UserUpdateJournal journal = new UserUpdateJournal(directory)) {
+            assertThat(journal.recover()).extracting(UserUpdateJournal.Entry::userId).containsExactly(1L);
+
+            journal.deleteBefore(journal.roll());
+
+            assertThat(journal.recover()).isEmpty();
+            assertThat(journalFiles().count()).isEqualTo(1);
+        }
+    }
+
+    private Stream<Path> journalFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList().stream();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.graphqlcrudapi.service;
+
+import org.example.graphqlcrudapi.dto.UserInput;
+import org.example.graphqlcrudapi.entity.User;
+import org.example.graphqlcrudapi.exception.DuplicateEmailException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:writebehind",
+        "app.users.write-behind.enabled=true",
+        "app.users.write-behind.flush-interval=1h",
+        "app.users.write-behind.journal-directory=${java.io.tmpdir}/graphql-crud-api-test/write-behind-${random.uuid}",
+        "app.changelog.directory=${java.io.tmpdir}/graphql-crud-api-test/write-behind-changelog"
+})
+class UserWriteBehindTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserWriteBehind writeBehind;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldCoalesceBufferedUpdatesIntoOneWrite() {
+        User user = userService.createUser(new UserInput("Buffered", "buffered@example.com", "+1000000001", null));
+
+        userService.updateUser(user.getId(), new UserInput("Buffered Once", "buffered@example.com", "+1000000001", null));
+        User updated = userService.updateUser(user.getId(), new UserInput("Buffered Twice", "buffered@example.com", "+1000000002", null));
+
+        assertThat(updated.getName()).isEqualTo("Buffered Twice");
+        assertThat(userService.getUserById(user.getId()).getPhone()).isEqualTo("+1000000002");
+        assertThat(nameInDatabase(user.getId())).isEqualTo("Buffered");
+
+        writeBehind.flush();
+
+        assertThat(nameInDatabase(user.getId())).isEqualTo("Buffered Twice");
+        assertThat(versionInDatabase(user.getId())).isEqualTo(user.getVersion() + 1);
+    }
+
+    @Test
+    void shouldAnswerWithTheVersionAndTimestampTheFlushWrites() throws InterruptedException {
+        User user = userService.createUser(new UserInput("Stamped", "stamped@example.com", null, null));
+
+        User updated = userService.updateUser(user.getId(), new UserInput("Stamped Again", "stamped@example.com", null, null));
+        Thread.sleep(20);
+        writeBehind.flush();
+
+        User stored = userService.getUserById(user.getId());
+        assertThat(updated.getVersion()).isEqualTo(user.getVersion() + 1).isEqualTo(stored.getVersion());
+        assertThat(updated.getUpdatedAt()).isEqualTo(stored.getUpdatedAt());
+    }
+
+    @Test
+    void shouldWriteBufferedUpdatesBeforeSearching() {
+        User user = userService.createUser(new UserInput("Searched", "searched@example.com", null, null));
+
+        userService.updateUser(user.getId(), new UserInput("Searched Renamed", "searched@example.com", null, null));
+
+        assertThat(userService.searchUsers("Renamed", null, null)).extracting(User::getId).containsExactly(user.getId());
+        assertThat(userService.searchUsersByName("Searched Renamed")).extracting(User::getId).containsExactly(user.getId());
+        assertThat(nameInDatabase(user.getId())).isEqualTo("Searched Renamed");
+    }
+
+    @Test
+    void shouldWriteEmailChangesDirectlyOverBufferedUpdates() {
+        User user = userService.createUser(new UserInput("Direct", "direct@example.com", null, null));
+
+        userService.updateUser(user.getId(), new UserInput("Direct Buffered", "direct@example.com", null, null));
+        userService.updateUser(user.getId(), new UserInput("Direct Written", "direct.new@example.com", null, null));
+
+        assertThat(nameInDatabase(user.getId())).isEqualTo("Direct Written");
+        assertThat(userService.getUserById(user.getId()).getName()).isEqualTo("Direct Written");
+
+        writeBehind.flush();
+
+        assertThat(nameInDatabase(user.getId())).isEqualTo("Direct Written");
+        assertThat(userService.getUserById(user.getId()).getEmail()).isEqualTo("direct.new@example.com");
+    }
+
+    @Test
+    void shouldKeepBufferedUpdatesWhenADirectWriteRollsBack() {
+        userService.createUser(new UserInput("Taken", "taken@example.com", null, null));
+        User user = userService.createUser(new UserInput("Kept", "kept@example.com", null, null));
+
+        userService.updateUser(user.getId(), new UserInput("Kept Buffered", "kept@example.com", null, null));
+        assertThatThrownBy(() -> userService.updateUser(user.getId(), new UserInput("Kept Written", "taken@example.com", null, null)))
+                .isInstanceOf(DuplicateEmailException.class);
+
+        assertThat(userService.getUserById(user.getId()).getName()).isEqualTo("Kept Buffered");
+
+        writeBehind.flush();
+
+        assertThat(nameInDatabase(user.getId())).isEqualTo("Kept Buffered");
+    }
+
+    private String nameInDatabase(Long id) {
+        return jdbcTemplate.queryForObject("SELECT name FROM users WHERE id = ?", String.class, id);
+    }
+
+    private Long versionInDatabase(Long id) {
+        return jdbcTemplate.queryForObject("SELECT version FROM users WHERE id = ?", Long.class, id);
+    }
+}
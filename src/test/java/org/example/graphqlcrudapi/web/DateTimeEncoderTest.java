@@ -0,0 +1,50 @@
+package org.example.graphqlcrudapi.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DateTimeEncoderTest {
+
+    @Test
+    void shouldEncodeLikeTheFormatter() {
+        LocalDateTime[] values = {
+                LocalDateTime.of(2024, 1, 15, 10, 30, 0, 999_999_999),
+                LocalDateTime.of(1999, 12, 31, 23, 59, 59),
+                LocalDateTime.of(1, 2, 3, 4, 5, 6),
+                LocalDateTime.of(1969, 7, 20, 20, 17, 40),
+                LocalDateTime.of(12345, 6, 7, 8, 9, 10),
+        };
+
+        for (LocalDateTime value : values) {
+            assertThat(DateTimeEncoder.encode(value)).isEqualTo(value.format(DateTimeEncoder.FORMATTER));
+            // Second time from the cache
+            assertThat(DateTimeEncoder.encode(value)).isEqualTo(value.format(DateTimeEncoder.FORMATTER));
+            assertThat(DateTimeEncoder.parse(DateTimeEncoder.encode(value))).isEqualTo(value.withNano(0));
+        }
+    }
+
+    @Test
+    void shouldNotReuseCachedTextForOtherSecondInSameSlot() {
+        LocalDateTime value = LocalDateTime.of(2024, 1, 15, 10, 30, 0);
+        LocalDateTime sameSlot = value.plusSeconds(1024);
+
+        DateTimeEncoder.encode(value);
+
+        assertThat(DateTimeEncoder.encode(sameSlot)).isEqualTo("2024-01-15T10:47:04");
+        assertThat(DateTimeEncoder.encode(value)).isEqualTo("2024-01-15T10:30:00");
+    }
+
+    @Test
+    void shouldEncodeEpochMillisInUtc() {
+        LocalDateTime value = LocalDateTime.of(2024, 1, 15, 10, 30, 0, 123_456_789);
+
+        assertThat(DateTimeEncoder.encode(value, DateTimeEncoder.Format.EPOCH_MILLIS))
+                .isEqualTo(value.toInstant(ZoneOffset.UTC).toEpochMilli());
+        assertThat(DateTimeEncoder.encode(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 500_000_000),
+                DateTimeEncoder.Format.EPOCH_MILLIS)).isEqualTo(-500L);
+    }
+}
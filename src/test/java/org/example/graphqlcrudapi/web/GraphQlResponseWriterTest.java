@@ -0,0 +1,54 @@
+package org.example.graphqlcrudapi.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.graphqlcrudapi.config.JacksonConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GraphQlResponseWriterTest {
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+
+    private final GraphQlResponseWriter writer = new GraphQlResponseWriter(objectMapper, List.of("getAllUsers", "id", "name"));
+
+    @Test
+    void shouldWriteSameJsonAsObjectMapper() throws IOException {
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("id", "1");
+        user.put("name", "Jane \"J\" Doe é");
+        user.put("unknownField", null);
+        user.put("count", 42L);
+        user.put("score", new BigDecimal("1.50"));
+        user.put("active", true);
+        user.put("tags", Arrays.asList("a", null, 3));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("data", Map.of("getAllUsers", List.of(user)));
+        result.put("errors", List.of(Map.of("message", "partial", "path", List.of("getAllUsers", 0))));
+
+        assertThat(write(result)).isEqualTo(objectMapper.writeValueAsString(result));
+    }
+
+    @Test
+    void shouldFallBackToObjectMapperForOtherValues() throws IOException {
+        Map<String, Object> result = Map.of("extensions", Map.of("at", LocalDateTime.of(2024, 1, 15, 10, 30)));
+
+        assertThat(write(result)).isEqualTo("{\"extensions\":{\"at\":\"2024-01-15T10:30:00\"}}");
+    }
+
+    private String write(Map<String, Object> result) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(result, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,242 @@
+package org.example.graphqlcrudapi.web;
+
+import graphql.ExecutionResultImpl;
+import graphql.GraphqlErrorBuilder;
+import org.junit.jupiter.api.Test;
+import org.springframework.graphql.execution.ErrorType;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.support.DefaultExecutionGraphQlResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.LinkedMultiValueMap;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyInterceptorTest {
+
+    private static final String CREATE = "mutation { createUser(input: {name: \"Jane\", email: \"jane@example.com\"}) { id } }";
+
+    private final IdempotencyInterceptor interceptor = new IdempotencyInterceptor(100, Duration.ofMinutes(5), null);
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private final WebGraphQlInterceptor.Chain chain = request -> Mono.fromSupplier(() ->
+            response(request, Map.of("createUser", Map.of("id", String.valueOf(executions.incrementAndGet())))));
+
+    @Test
+    void shouldReplayResultForRetriedKey() {
+        WebGraphQlResponse first = interceptor.intercept(request(CREATE, "key-1"), chain).block();
+        WebGraphQlResponse retry = interceptor.intercept(request(CREATE, "key-1"), chain).block();
+
+        assertThat(executions).hasValue(1);
+        assertThat(retry.toMap()).isEqualTo(first.toMap());
+        assertThat(retry.getResponseHeaders().getFirst(IdempotencyInterceptor.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(first.getResponseHeaders().containsKey(IdempotencyInterceptor.REPLAYED_HEADER)).isFalse();
+    }
+
+    @Test
+    void shouldWaitForInFlightExecution() {
+        Sinks.One<WebGraphQlResponse> pending = Sinks.one();
+        WebGraphQlInterceptor.Chain slowChain = request -> {
+            executions.incrementAndGet();
+            return pending.asMono();
+        };
+        WebGraphQlRequest request = request(CREATE, "key-1");
+
+        Mono<WebGraphQlResponse> first = interceptor.intercept(request, slowChain).cache();
+        first.subscribe();
+        Mono<WebGraphQlResponse> duplicate = interceptor.intercept(request(CREATE, "key-1"), slowChain);
+        pending.tryEmitValue(response(request, Map.of("createUser", Map.of("id", "1"))));
+
+        assertThat(duplicate.block().toMap()).isEqualTo(first.block().toMap());
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void shouldRejectKeyReusedForDifferentRequest() {
+        interceptor.intercept(request(CREATE, "key-1"), chain).block();
+
+        WebGraphQlResponse response = interceptor.intercept(
+                request(CREATE.replace("Jane", "John"), "key-1"), chain).block();
+
+        assertThat(executions).hasValue(1);
+        assertThat(response.getErrors()).singleElement()
+                .satisfies(error -> assertThat(error.getErrorType()).isEqualTo(ErrorType.BAD_REQUEST));
+    }
+
+    @Test
+    void shouldKeepErrorsOnceExecutionStarted() {
+        WebGraphQlInterceptor.Chain failingChain = request -> {
+            executions.incrementAndGet();
+            return Mono.just(new WebGraphQlResponse(new DefaultExecutionGraphQlResponse(request.toExecutionInput(),
+                    ExecutionResultImpl.newExecutionResult()
+                            .data(null)
+                            .addError(GraphqlErrorBuilder.newError().errorType(ErrorType.INTERNAL_ERROR).message("boom").build())
+                            .build())));
+        };
+
+        interceptor.intercept(request(CREATE, "key-1"), failingChain).block();
+        WebGraphQlResponse retry = interceptor.intercept(request(CREATE, "key-1"), chain).block();
+
+        assertThat(executions).hasValue(1);
+        assertThat(retry.getErrors()).singleElement()
+                .satisfies(error -> assertThat(error.getErrorType()).isEqualTo(ErrorType.INTERNAL_ERROR));
+    }
+
+    @Test
+    void shouldFreeKeyRejectedBeforeExecution() {
+        WebGraphQlInterceptor.Chain invalidChain = request -> {
+            executions.incrementAndGet();
+            return Mono.just(new WebGraphQlResponse(new DefaultExecutionGraphQlResponse(request.toExecutionInput(),
+                    ExecutionResultImpl.newExecutionResult()
+                            .addError(GraphqlErrorBuilder.newError().errorType(ErrorType.BAD_REQUEST).message("invalid").build())
+                            .build())));
+        };
+
+        interceptor.intercept(request(CREATE, "key-1"), invalidChain).block();
+        interceptor.intercept(request(CREATE, "key-1"), chain).block();
+
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    void shouldKeepUnknownOutcomeOfCancelledExecution() {
+        WebGraphQlInterceptor.Chain hangingChain = request -> {
+            executions.incrementAndGet();
+            return Mono.never();
+        };
+
+        interceptor.intercept(request(CREATE, "key-1"), hangingChain).subscribe().dispose();
+        WebGraphQlResponse retry = interceptor.intercept(request(CREATE, "key-1"), chain).block();
+
+        assertThat(executions).hasValue(1);
+        assertThat(retry.getErrors()).singleElement()
+                .satisfies(error -> assertThat(error.getErrorType().toString()).isEqualTo("OUTCOME_UNKNOWN"));
+    }
+
+    @Test
+    void shouldNotEvictExecutionsInFlight() {
+        IdempotencyInterceptor small = new IdempotencyInterceptor(1, Duration.ofMinutes(5), null);
+        Sinks.One<WebGraphQlResponse> pending = Sinks.one();
+        WebGraphQlRequest request = request(CREATE, "key-1");
+        WebGraphQlInterceptor.Chain slowChain = ignored -> {
+            executions.incrementAndGet();
+            return pending.asMono();
+        };
+
+        Mono<WebGraphQlResponse> first = small.intercept(request, slowChain).cache();
+        first.subscribe();
+        small.intercept(request(CREATE, "key-2"), chain).block();
+        small.intercept(request(CREATE, "key-3"), chain).block();
+        Mono<WebGraphQlResponse> duplicate = small.intercept(request(CREATE, "key-1"), chain);
+        pending.tryEmitValue(response(request, Map.of("createUser", Map.of("id", "1"))));
+
+        assertThat(duplicate.block().toMap()).isEqualTo(first.block().toMap());
+        assertThat(executions).hasValue(3);
+    }
+
+    @Test
+    void shouldMatchVariablesRegardlessOfKeyOrder() {
+        Map<String, Object> input = new LinkedHashMap<>();
+        input.put("name", "Jane");
+        input.put("email", "jane@example.com");
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("email", "jane@example.com");
+        reordered.put("name", "Jane");
+
+        interceptor.intercept(request(CREATE, "key-1", Map.of("input", input)), chain).block();
+        WebGraphQlResponse retry = interceptor.intercept(request(CREATE, "key-1", Map.of("input", reordered)), chain).block();
+
+        assertThat(executions).hasValue(1);
+        assertThat(retry.getErrors()).isEmpty();
+    }
+
+    @Test
+    void shouldMatchRequestsResolvingToTheSameDateTimeFormat() {
+        interceptor.intercept(request(CREATE, "key-1", Map.of(), "EPOCH-MILLIS"), chain).block();
+        WebGraphQlResponse retry = interceptor.intercept(request(CREATE, "key-1", Map.of(), "epoch-millis"), chain).block();
+        interceptor.intercept(request(CREATE, "key-2", Map.of(), "iso"), chain).block();
+        WebGraphQlResponse defaultRetry = interceptor.intercept(request(CREATE, "key-2", Map.of(), null), chain).block();
+        WebGraphQlResponse otherFormat = interceptor.intercept(request(CREATE, "key-2", Map.of(), "epoch-millis"), chain).block();
+
+        assertThat(executions).hasValue(2);
+        assertThat(retry.getErrors()).isEmpty();
+        assertThat(defaultRetry.getErrors()).isEmpty();
+        assertThat(otherFormat.getErrors()).singleElement()
+                .satisfies(error -> assertThat(error.getErrorType()).isEqualTo(ErrorType.BAD_REQUEST));
+    }
+
+    @Test
+    void shouldKeepKeysOfDifferentCallersApart() {
+        interceptor.intercept(request(CREATE, "key-1", "address 10.0.0.1", null), chain).block();
+        WebGraphQlResponse otherAddress = interceptor.intercept(request(CREATE, "key-1", "address 10.0.0.2", null), chain).block();
+        interceptor.intercept(request(CREATE, "key-2", "address 10.0.0.1", "Bearer alice"), chain).block();
+        WebGraphQlResponse otherCredentials = interceptor.intercept(request(CREATE, "key-2", "address 10.0.0.1", "Bearer bob"), chain).block();
+        WebGraphQlResponse retry = interceptor.intercept(request(CREATE, "key-2", "address 10.0.0.1", "Bearer alice"), chain).block();
+
+        assertThat(executions).hasValue(4);
+        assertThat(otherAddress.getResponseHeaders().getFirst(IdempotencyInterceptor.REPLAYED_HEADER)).isNull();
+        assertThat(otherCredentials.getResponseHeaders().getFirst(IdempotencyInterceptor.REPLAYED_HEADER)).isNull();
+        assertThat(retry.getResponseHeaders().getFirst(IdempotencyInterceptor.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void shouldPassThroughQueriesAndRequestsWithoutKey() {
+        interceptor.intercept(request("{ getUserCount }", "key-1"), chain).block();
+        interceptor.intercept(request("{ getUserCount }", "key-1"), chain).block();
+        interceptor.intercept(request(CREATE, null), chain).block();
+        interceptor.intercept(request(CREATE, null), chain).block();
+
+        assertThat(executions).hasValue(4);
+    }
+
+    private static WebGraphQlRequest request(String document, String key) {
+        return request(document, key, Map.of());
+    }
+
+    private static WebGraphQlRequest request(String document, String key, Map<String, Object> variables) {
+        return request(document, key, variables, null);
+    }
+
+    private static WebGraphQlRequest request(String document, String key, String caller, String authorization) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(IdempotencyInterceptor.KEY_HEADER, key);
+        if (authorization != null) {
+            headers.set(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        return new WebGraphQlRequest(URI.create("http://localhost/graphql"), headers, new LinkedMultiValueMap<>(),
+                Map.of(WebGraphQlRequests.CALLER_ATTRIBUTE, caller), Map.of("query", document), "1", Locale.ENGLISH);
+    }
+
+    private static WebGraphQlRequest request(String document, String key, Map<String, Object> variables,
+                                             String dateTimeFormat) {
+        HttpHeaders headers = new HttpHeaders();
+        if (key != null) {
+            headers.set(IdempotencyInterceptor.KEY_HEADER, key);
+        }
+        if (dateTimeFormat != null) {
+            headers.set(DateTimeFormatInterceptor.FORMAT_HEADER, dateTimeFormat);
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("query", document);
+        body.put("variables", variables);
+        return new WebGraphQlRequest(URI.create("http://localhost/graphql"), headers, new LinkedMultiValueMap<>(),
+                Map.of(), body, "1", Locale.ENGLISH);
+    }
+
+    private static WebGraphQlResponse response(WebGraphQlRequest request, Map<String, Object> data) {
+        return new WebGraphQlResponse(new DefaultExecutionGraphQlResponse(request.toExecutionInput(),
+                ExecutionResultImpl.newExecutionResult().data(data).build()));
+    }
+}
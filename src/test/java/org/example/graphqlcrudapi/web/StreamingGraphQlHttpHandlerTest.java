@@ -0,0 +1,218 @@
+package org.example.graphqlcrudapi.web;
+
+import graphql.ExecutionResultImpl;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.example.graphqlcrudapi.config.JacksonConfig;
+import org.example.graphqlcrudapi.execution.ExecutionBudget;
+import org.junit.jupiter.api.Test;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.server.WebSocketGraphQlInterceptor;
+import org.springframework.graphql.support.DefaultExecutionGraphQlResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.function.AsyncServerResponse;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingGraphQlHttpHandlerTest {
+
+    private static final String BODY = "{\"data\":{\"getUserCount\":1}}";
+
+    private final GraphQlResponseWriter responseWriter = new GraphQlResponseWriter(new JacksonConfig().objectMapper(), List.of());
+
+    @Test
+    void shouldCompressWhenClientAcceptsGzip() throws Exception {
+        MockHttpServletResponse response = execute(handler(), "deflate, gzip;q=0.5");
+
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(BODY);
+        }
+    }
+
+    @Test
+    void shouldNotCompressWhenGzipIsRefused() throws Exception {
+        MockHttpServletResponse response = execute(handler(), "gzip;q=0, deflate");
+
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.getContentAsString()).isEqualTo(BODY);
+    }
+
+    @Test
+    void shouldCancelBudgetWhenProbeFindsClientGone() throws Exception {
+        AtomicReference<ExecutionBudget> budget = new AtomicReference<>();
+        StubWebGraphQlHandler graphQlHandler = new StubWebGraphQlHandler((request, response) -> {
+            budget.set(request.toExecutionInput().getGraphQLContext().get(ExecutionBudget.CONTEXT_KEY));
+            awaitCancellation(budget.get());
+        });
+        MockHttpServletResponse servletResponse = new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return new DisconnectedOutputStream();
+            }
+        };
+
+        try (StreamingGraphQlHttpHandler handler = probingHandler(graphQlHandler, Duration.ofMillis(10))) {
+            execute(handler, "identity", servletResponse);
+        }
+
+        assertThat(budget.get().cancelReason()).isEqualTo(ExecutionBudget.Reason.CLIENT_DISCONNECT);
+    }
+
+    @Test
+    void shouldNotProbeRequestsWaitingForResponseHeaders() throws Exception {
+        StubWebGraphQlHandler graphQlHandler = new StubWebGraphQlHandler((request, response) -> {
+            StreamingGraphQlHttpHandler.expectResponseHeaders(request);
+            response.getResponseHeaders().set("X-Replayed", "true");
+            sleep(Duration.ofMillis(500));
+        });
+        MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+
+        // Long enough for the execution to have started before the first probe
+        try (StreamingGraphQlHttpHandler handler = probingHandler(graphQlHandler, Duration.ofMillis(100))) {
+            execute(handler, "identity", servletResponse);
+        }
+
+        assertThat(servletResponse.getHeader("X-Replayed")).isEqualTo("true");
+        assertThat(servletResponse.getContentAsString()).isEqualTo(BODY);
+    }
+
+    @Test
+    void shouldRunOnRequestThreadWithoutProbing() throws Exception {
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        StubWebGraphQlHandler graphQlHandler = new StubWebGraphQlHandler((request, response) -> thread.set(Thread.currentThread()));
+
+        try (StreamingGraphQlHttpHandler handler = new StreamingGraphQlHttpHandler(graphQlHandler, responseWriter, false,
+                Schedulers.boundedElastic(), Duration.ZERO)) {
+            execute(handler, "identity", new MockHttpServletResponse());
+        }
+
+        assertThat(thread.get()).isSameAs(Thread.currentThread());
+    }
+
+    @Test
+    void shouldReadAcceptEncodingWeights() {
+        assertThat(StreamingGraphQlHttpHandler.acceptsGzip(List.of("GZIP"))).isTrue();
+        assertThat(StreamingGraphQlHttpHandler.acceptsGzip(List.of("br", "gzip ; q=0.001"))).isTrue();
+        assertThat(StreamingGraphQlHttpHandler.acceptsGzip(List.of("gzip;q=0.0"))).isFalse();
+        assertThat(StreamingGraphQlHttpHandler.acceptsGzip(List.of("*;q=0.1"))).isTrue();
+        assertThat(StreamingGraphQlHttpHandler.acceptsGzip(List.of("*, gzip;q=0"))).isFalse();
+        assertThat(StreamingGraphQlHttpHandler.acceptsGzip(List.of("identity"))).isFalse();
+        assertThat(StreamingGraphQlHttpHandler.acceptsGzip(List.of())).isFalse();
+    }
+
+    private StreamingGraphQlHttpHandler handler() {
+        return new StreamingGraphQlHttpHandler(new StubWebGraphQlHandler((request, response) -> {
+        }), responseWriter, true, null, Duration.ZERO);
+    }
+
+    private StreamingGraphQlHttpHandler probingHandler(StubWebGraphQlHandler graphQlHandler, Duration interval) {
+        return new StreamingGraphQlHttpHandler(graphQlHandler, responseWriter, false, Schedulers.boundedElastic(), interval);
+    }
+
+    private static MockHttpServletResponse execute(StreamingGraphQlHttpHandler handler, String acceptEncoding) throws Exception {
+        MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+        execute(handler, acceptEncoding, servletResponse);
+        return servletResponse;
+    }
+
+    private static void execute(StreamingGraphQlHttpHandler handler, String acceptEncoding,
+                                MockHttpServletResponse servletResponse) throws Exception {
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest("POST", "/graphql");
+        servletRequest.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        servletRequest.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        servletRequest.setContent("{\"query\":\"{ getUserCount }\"}".getBytes(StandardCharsets.UTF_8));
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(servletRequest, servletResponse));
+        try {
+            ServerResponse response = handler.handleRequest(
+                    ServerRequest.create(servletRequest, List.of(new MappingJackson2HttpMessageConverter())));
+            ((AsyncServerResponse) response).block().writeTo(servletRequest, servletResponse, List::of);
+        } catch (IOException ex) {
+            // The disconnected client
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    private static void awaitCancellation(ExecutionBudget budget) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (budget.cancelReason() == null && System.nanoTime() < deadline) {
+            sleep(Duration.ofMillis(5));
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs {@code execution} with the request and the response it is about to return
+     */
+    private static final class StubWebGraphQlHandler implements WebGraphQlHandler {
+
+        private final BiConsumer<WebGraphQlRequest, WebGraphQlResponse> execution;
+
+        private StubWebGraphQlHandler(BiConsumer<WebGraphQlRequest, WebGraphQlResponse> execution) {
+            this.execution = execution;
+        }
+
+        @Override
+        public WebSocketGraphQlInterceptor getWebSocketInterceptor() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Mono<WebGraphQlResponse> handleRequest(WebGraphQlRequest request) {
+            return Mono.fromCallable(() -> {
+                WebGraphQlResponse response = new WebGraphQlResponse(new DefaultExecutionGraphQlResponse(request.toExecutionInput(),
+                        ExecutionResultImpl.newExecutionResult().data(Map.of("getUserCount", 1)).build()));
+                execution.accept(request, response);
+                return response;
+            });
+        }
+    }
+
+    private static final class DisconnectedOutputStream extends ServletOutputStream {
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            throw new IOException("Broken pipe");
+        }
+    }
+}